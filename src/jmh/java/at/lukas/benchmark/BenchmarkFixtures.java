@@ -0,0 +1,140 @@
+package at.lukas.benchmark;
+
+import at.lukas.CustomGroupSystem;
+import at.lukas.manager.DatabaseManager;
+import at.lukas.metrics.MetricsRegistry;
+import at.lukas.storage.MySqlStorage;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Gemeinsamer Aufbau für die Benchmarks.
+ * <p>
+ * Alle Mocks sind stubOnly, sonst merkt sich Mockito jeden Aufruf und der Speicherverbrauch
+ * wächst über die Messung hinweg.
+ */
+final class BenchmarkFixtures {
+    static final String[][] GROUPS = {
+            {"1", "default", "&7[Member]"},
+            {"2", "vip", "&6[VIP]"},
+            {"3", "admin", "&c[Admin]"}
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    static Logger silentLogger() {
+        Logger logger = Logger.getLogger("groupsystem-benchmark");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        return logger;
+    }
+
+    /**
+     * DatabaseManager mit gefülltem Gruppen-Cache. Die Gruppen kommen über einen gemockten
+     * JDBC-Pfad, damit der echte Ladecode die Caches befüllt.
+     */
+    static DatabaseManager databaseManager(int cachedPlayers) throws Exception {
+        CustomGroupSystem plugin = stub(CustomGroupSystem.class);
+        when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+        when(plugin.getLogger()).thenReturn(silentLogger());
+        when(plugin.getStorage()).thenReturn(new MySqlStorage());
+        when(plugin.getMetrics()).thenReturn(new MetricsRegistry());
+
+        ResultSet groups = stub(ResultSet.class);
+        when(groups.next()).thenReturn(true, true, true, false);
+        when(groups.getInt("id")).thenReturn(1, 2, 3);
+        when(groups.getString("name")).thenReturn(GROUPS[0][1], GROUPS[1][1], GROUPS[2][1]);
+        when(groups.getString("prefix")).thenReturn(GROUPS[0][2], GROUPS[1][2], GROUPS[2][2]);
+
+        ResultSet permissions = stub(ResultSet.class);
+        when(permissions.next()).thenReturn(false);
+
+        PreparedStatement stmt = stub(PreparedStatement.class);
+        when(stmt.executeQuery()).thenReturn(groups, permissions);
+
+        Connection conn = stub(Connection.class);
+        when(conn.prepareStatement(anyString())).thenReturn(stmt);
+        when(plugin.getConnection()).thenReturn(conn);
+
+        DatabaseManager dbManager = new DatabaseManager(plugin);
+        dbManager.loadAllGroupsIntoCache().join();
+
+        for (int i = 0; i < cachedPlayers; i++) {
+            dbManager.useDefaultPlayerData(playerUuid(i));
+        }
+
+        return dbManager;
+    }
+
+    /**
+     * Server ohne User-Cache, damit Namen, die player_names nicht kennt, unbekannt bleiben.
+     */
+    static void installServer() {
+        if (Bukkit.getServer() == null) {
+            Server server = stub(Server.class);
+            when(server.getLogger()).thenReturn(silentLogger());
+            Bukkit.setServer(server);
+        }
+    }
+
+    static UUID playerUuid(int index) {
+        return new UUID(0x5EED, index);
+    }
+
+    static Plugin pluginWithPermissions(int count) {
+        Set<Permission> registered = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            // Verteilt auf 50 Plugins mit je 10 Unterbereichen, wie bei einem großen Server
+            registered.add(new Permission("plugin" + (i % 50) + ".area" + (i % 10) + ".node" + i));
+        }
+
+        PluginManager pluginManager = stub(PluginManager.class);
+        when(pluginManager.getPermissions()).thenReturn(registered);
+
+        Server server = stub(Server.class);
+        when(server.getPluginManager()).thenReturn(pluginManager);
+        when(server.isPrimaryThread()).thenReturn(true);
+
+        Plugin plugin = stub(Plugin.class);
+        when(plugin.getServer()).thenReturn(server);
+        when(plugin.getLogger()).thenReturn(silentLogger());
+        when(plugin.isEnabled()).thenReturn(true);
+        return plugin;
+    }
+
+    static Player player(UUID uuid, String name) {
+        Player player = stub(Player.class);
+        when(player.getUniqueId()).thenReturn(uuid);
+        when(player.getName()).thenReturn(name);
+        when(player.isOnline()).thenReturn(true);
+        when(player.addAttachment(any(Plugin.class)))
+                .thenAnswer(invocation -> new PermissionAttachment(invocation.getArgument(0), player));
+        return player;
+    }
+}
@@ -0,0 +1,56 @@
+package at.lukas.benchmark;
+
+import at.lukas.manager.DatabaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache-Lookups, wie sie Chat-, Tab- und Schild-Plugins von vielen Threads gleichzeitig machen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class DatabaseCacheBenchmark {
+    private static final String[] GROUP_NAMES = {"default", "VIP", "admin", "missing"};
+
+    @Param({"10000"})
+    public int players;
+
+    private DatabaseManager dbManager;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        UUID nextPlayer(int players) {
+            // Jeder zehnte Lookup trifft einen Spieler, der nicht im Cache ist
+            int index = next++ % (players + players / 10);
+            return BenchmarkFixtures.playerUuid(index);
+        }
+
+        String nextGroup() {
+            return GROUP_NAMES[next++ & 3];
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        dbManager = BenchmarkFixtures.databaseManager(players);
+    }
+
+    @Benchmark
+    public String getPlayerPrefix(Cursor cursor) {
+        return dbManager.getPlayerPrefix(cursor.nextPlayer(players));
+    }
+
+    @Benchmark
+    public boolean groupExists(Cursor cursor) {
+        return dbManager.groupExists(cursor.nextGroup());
+    }
+}
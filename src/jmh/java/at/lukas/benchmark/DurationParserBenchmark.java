@@ -0,0 +1,30 @@
+package at.lukas.benchmark;
+
+import at.lukas.misc.DurationParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationParserBenchmark {
+
+    @Param({"30d", "1mo2w3d4h5m6s", "permanent"})
+    public String input;
+
+    public long millis = 42L * 24 * 60 * 60 * 1000 + 3_723_000;
+
+    @Benchmark
+    public Long parse() {
+        return DurationParser.parse(input);
+    }
+
+    @Benchmark
+    public String formatDuration() {
+        return DurationParser.formatDuration(millis);
+    }
+}
@@ -0,0 +1,69 @@
+package at.lukas.benchmark;
+
+import at.lukas.manager.DatabaseManager;
+import at.lukas.manager.PermissionManager;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anwenden von Gruppen-Permissions mit Wildcards gegen einen Server mit vielen registrierten Permissions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionWildcardBenchmark {
+
+    @Param({"5000"})
+    public int registeredPermissions;
+
+    private PermissionManager permissionManager;
+    private Player player;
+
+    private final List<String> narrowWildcard = List.of("plugin7.area7.*", "essentials.home");
+    private final List<String> broadWildcards = List.of("plugin1.*", "plugin2.*", "plugin3.*", "essentials.home");
+    private final List<String> everything = List.of("*");
+
+    @Setup
+    public void setup() throws Exception {
+        Plugin plugin = BenchmarkFixtures.pluginWithPermissions(registeredPermissions);
+        DatabaseManager dbManager = BenchmarkFixtures.databaseManager(0);
+
+        permissionManager = new PermissionManager(plugin, dbManager);
+        player = BenchmarkFixtures.player(UUID.randomUUID(), "Steve");
+    }
+
+    // Erstes Anwenden nach dem Login: alles wird neu gesetzt
+
+    @Benchmark
+    public void narrowWildcard() {
+        permissionManager.removePermissions(player);
+        permissionManager.applyPermissions(player, narrowWildcard);
+    }
+
+    @Benchmark
+    public void broadWildcards() {
+        permissionManager.removePermissions(player);
+        permissionManager.applyPermissions(player, broadWildcards);
+    }
+
+    @Benchmark
+    public void allPermissions() {
+        permissionManager.removePermissions(player);
+        permissionManager.applyPermissions(player, everything);
+    }
+
+    // Refresh ohne Änderung: nur Expansion und Vergleich
+
+    @Benchmark
+    public void refreshUnchanged() {
+        permissionManager.applyPermissions(player, broadWildcards);
+    }
+}
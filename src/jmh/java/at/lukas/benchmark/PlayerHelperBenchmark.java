@@ -0,0 +1,31 @@
+package at.lukas.benchmark;
+
+import at.lukas.manager.DatabaseManager;
+import at.lukas.misc.PlayerHelper;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerHelperBenchmark {
+
+    private DatabaseManager dbManager;
+    private Player player;
+
+    @Setup
+    public void setup() throws Exception {
+        dbManager = BenchmarkFixtures.databaseManager(1);
+        player = BenchmarkFixtures.player(BenchmarkFixtures.playerUuid(0), "Steve");
+    }
+
+    @Benchmark
+    public void applyPrefix() {
+        PlayerHelper.applyPrefix(player, dbManager);
+    }
+}
@@ -0,0 +1,68 @@
+package at.lukas.benchmark;
+
+import at.lukas.listener.SignListener;
+import at.lukas.manager.DatabaseManager;
+import at.lukas.manager.SignManager;
+import at.lukas.misc.PlayerNameResolver;
+import at.lukas.misc.SignRenderer;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.SignChangeEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Platzhalter-Ersetzung beim Platzieren eines Schildes, mit einem Online- und einem
+ * unbekannten Spieler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignListenerBenchmark {
+
+    private SignListener listener;
+    private SignChangeEvent event;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.installServer();
+        DatabaseManager dbManager = BenchmarkFixtures.databaseManager(1);
+
+        Player steve = BenchmarkFixtures.player(BenchmarkFixtures.playerUuid(0), "Steve");
+        // Steve ist online, Nobody wurde bereits (erfolglos) in player_names gesucht
+        PlayerNameResolver nameResolver = new PlayerNameResolver(dbManager, 100);
+        nameResolver.playerJoined(steve.getUniqueId(), "Steve");
+        nameResolver.resolve("Nobody").join();
+
+        LegacyComponentSerializer section = LegacyComponentSerializer.legacySection();
+        Component[] lines = {
+                section.deserialize("%Steve%"),
+                section.deserialize("Rank: %Steve%group%"),
+                section.deserialize("%Nobody%"),
+                section.deserialize("plain text")
+        };
+
+        event = BenchmarkFixtures.stub(SignChangeEvent.class);
+        when(event.getPlayer()).thenReturn(steve);
+        for (int i = 0; i < lines.length; i++) {
+            when(event.line(i)).thenReturn(lines[i]);
+        }
+
+        // Nur das Rendern messen, das Persistieren übernimmt der SignManager im nächsten Tick
+        listener = new SignListener(
+                new SignRenderer(dbManager, nameResolver),
+                BenchmarkFixtures.stub(SignManager.class));
+    }
+
+    @Benchmark
+    public void processSign() {
+        listener.onSignChange(event);
+    }
+}
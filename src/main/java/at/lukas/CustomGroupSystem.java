@@ -3,30 +3,49 @@ package at.lukas;
 import at.lukas.commands.GroupSystemCommand;
 import at.lukas.commands.GroupSystemTabCompleter;
 import at.lukas.listener.MotdListener;
+import at.lukas.listener.PermissionIndexListener;
 import at.lukas.listener.PlayerListener;
 import at.lukas.listener.SignListener;
 import at.lukas.manager.DatabaseManager;
 import at.lukas.manager.PermissionManager;
-import at.lukas.misc.ExpiryCheckTask;
+import at.lukas.manager.SignManager;
+import at.lukas.metrics.LatencyHistogram;
+import at.lukas.metrics.MetricsRegistry;
+import at.lukas.migration.MigrationRunner;
+import at.lukas.misc.ChangeLogPoller;
+import at.lukas.misc.ExpiryScheduler;
+import at.lukas.misc.PlayerNameResolver;
+import at.lukas.misc.RefreshScheduler;
+import at.lukas.misc.SignRenderer;
+import at.lukas.storage.Storage;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Objects;
 import java.util.logging.Logger;
 
 public class CustomGroupSystem extends JavaPlugin {
     private final Logger logger = getLogger();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    // Wartezeit auf eine Verbindung aus dem Pool - hoch, wenn der Pool ausgelastet ist
+    private final LatencyHistogram connectionLatency = metrics.histogram("getConnection");
     private HikariDataSource dataSource;
+    private Storage storage;
     private DatabaseManager dbManager;
     private PermissionManager permissionManager;
-    private BukkitTask expiryCheckTask;
+    private ExpiryScheduler expiryScheduler;
+    private ChangeLogPoller changeLogPoller;
+    private RefreshScheduler refreshScheduler;
+    private PlayerNameResolver nameResolver;
+    private SignRenderer signRenderer;
+    private SignManager signManager;
 
     @Override
     public void onEnable() {
@@ -41,16 +60,29 @@ public class CustomGroupSystem extends JavaPlugin {
         initializeManagers();
         registerCommands();
         registerEventListeners();
-        startExpiryCheckTask();
+        startExpiryScheduler();
+        startChangeLogPoller();
 
         logger.info("CustomGroupSystem enabled successfully!");
     }
 
     @Override
     public void onDisable() {
-        if (expiryCheckTask != null) {
-            expiryCheckTask.cancel();
-            logger.info("Expiry check task cancelled.");
+        if (expiryScheduler != null) {
+            expiryScheduler.stop();
+            logger.info("Expiry scheduler stopped.");
+        }
+
+        if (changeLogPoller != null) {
+            changeLogPoller.stop();
+        }
+
+        if (refreshScheduler != null) {
+            refreshScheduler.stop();
+        }
+
+        if (signManager != null) {
+            signManager.stop();
         }
 
         if (dbManager != null) {
@@ -64,41 +96,32 @@ public class CustomGroupSystem extends JavaPlugin {
     private boolean initializeDatabase() {
         try {
             connectToDatabase();
-            createTablesOnFirstBoot();
+            runMigrations();
             return true;
-        } catch (SQLException e) {
+        } catch (SQLException | IllegalArgumentException e) {
             logger.severe("Database initialization failed: " + e.getMessage());
             return false;
         }
     }
 
     protected void connectToDatabase() throws SQLException {
-        logger.info("Connecting to database...");
-
         FileConfiguration config = getConfig();
+        storage = Storage.fromConfig(config);
 
-        String host = config.getString("database.host", "localhost");
-        int port = config.getInt("database.port", 3306);
-        String database = config.getString("database.database", "minecraft");
-        String username = config.getString("database.username", "mcuser");
-        String password = config.getString("database.password", "mcuser");
+        logger.info("Connecting to " + storage.getName() + " database...");
 
         int maxPoolSize = config.getInt("database.pool.maximum-pool-size", 10);
         int minIdle = config.getInt("database.pool.minimum-idle", 2);
         int connectionTimeout = config.getInt("database.pool.connection-timeout", 30000);
 
-        String jdbcUrl = String.format("jdbc:mysql://%s:%d/%s", host, port, database);
-
-        logger.info("Connecting to: " + jdbcUrl);
-
         HikariConfig hikariConfig = new HikariConfig();
-        hikariConfig.setJdbcUrl(jdbcUrl);
-        hikariConfig.setUsername(username);
-        hikariConfig.setPassword(password);
+        storage.configure(hikariConfig, config, getDataFolder());
         hikariConfig.setMaximumPoolSize(maxPoolSize);
         hikariConfig.setMinimumIdle(minIdle);
         hikariConfig.setConnectionTimeout(connectionTimeout);
 
+        logger.info("Connecting to: " + hikariConfig.getJdbcUrl());
+
         dataSource = new HikariDataSource(hikariConfig);
 
         try (Connection connection = dataSource.getConnection()) {
@@ -108,62 +131,13 @@ public class CustomGroupSystem extends JavaPlugin {
         }
     }
 
-    private void createTablesOnFirstBoot() throws SQLException {
-        String createGroupsTable = """
-                CREATE TABLE IF NOT EXISTS group_data (
-                    id INT AUTO_INCREMENT PRIMARY KEY,
-                    name VARCHAR(36) NOT NULL UNIQUE,
-                    prefix VARCHAR(64)
-                )
-                """;
-
-        String createPlayerGroupsTable = """
-                CREATE TABLE IF NOT EXISTS player_groups (
-                    uuid CHAR(36) NOT NULL PRIMARY KEY,
-                    group_id INT NOT NULL,
-                    expiry DATETIME NULL,
-                    assigned_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
-                    CONSTRAINT fk_player_groups_group
-                        FOREIGN KEY (group_id)
-                        REFERENCES group_data(id)
-                        ON DELETE CASCADE,
-                    INDEX idx_player_groups_group (group_id),
-                    INDEX idx_player_groups_expiry (expiry)
-                )
-                """;
-
-        // NEW: Group permissions table
-        String createGroupPermissionsTable = """
-                CREATE TABLE IF NOT EXISTS group_permissions (
-                    id INT AUTO_INCREMENT PRIMARY KEY,
-                    group_id INT NOT NULL,
-                    permission VARCHAR(255) NOT NULL,
-                    CONSTRAINT fk_group_permissions_group
-                        FOREIGN KEY (group_id)
-                        REFERENCES group_data(id)
-                        ON DELETE CASCADE,
-                    UNIQUE KEY unique_group_permission (group_id, permission),
-                    INDEX idx_group_permissions_group (group_id)
-                )
-                """;
-
-        String insertDefaultGroups = """
-                INSERT IGNORE INTO group_data (name, prefix) VALUES
-                ('default', '&7[Member]'),
-                ('vip', '&6[VIP]'),
-                ('admin', '&c[Admin]')
-                """;
-
-        try (Connection connection = dataSource.getConnection();
-             Statement statement = connection.createStatement()) {
-
-            statement.execute(createGroupsTable);
-            statement.execute(createPlayerGroupsTable);
-            statement.execute(createGroupPermissionsTable);  // ← ADD THIS
-            statement.execute(insertDefaultGroups);
-
-            logger.info("Database tables initialized successfully.");
+    private void runMigrations() throws SQLException {
+        int applied = new MigrationRunner(dataSource, storage, logger).migrate();
+
+        if (applied > 0) {
+            logger.info("Applied " + applied + " schema migration(s).");
         }
+        logger.info("Database schema is up to date.");
     }
 
     private void closeDatabase() {
@@ -178,6 +152,23 @@ public class CustomGroupSystem extends JavaPlugin {
 
         permissionManager = new PermissionManager(this, dbManager);  // ← UPDATE THIS
 
+        long budgetMillis = getConfig().getLong("refresh.tick-budget-ms", 5);
+        refreshScheduler = new RefreshScheduler(this, dbManager, permissionManager, budgetMillis);
+        refreshScheduler.start();
+
+        nameResolver = new PlayerNameResolver(dbManager, getConfig().getInt("names.cache-size", 10000));
+        // Nach einem Reload sind bereits Spieler online
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            nameResolver.playerJoined(player.getUniqueId(), player.getName());
+        }
+
+        int signUpdatesPerTick = getConfig().getInt("signs.updates-per-tick", 20);
+        signRenderer = new SignRenderer(dbManager, nameResolver);
+        signManager = new SignManager(this, signRenderer, signUpdatesPerTick);
+        refreshScheduler.addListener(signManager);
+        nameResolver.addJoinListener(signManager::nameJoined);
+        signManager.start();
+
         dbManager.loadAllGroupsIntoCache().thenRun(() -> {
             logger.info("Loaded " + dbManager.getAllGroups().size() + " groups into cache.");
         }).exceptionally(e -> {
@@ -187,7 +178,7 @@ public class CustomGroupSystem extends JavaPlugin {
     }
 
     private void registerCommands() {
-        GroupSystemCommand command = new GroupSystemCommand(permissionManager, dbManager, this);
+        GroupSystemCommand command = new GroupSystemCommand(permissionManager, dbManager, refreshScheduler, nameResolver, this);
         GroupSystemTabCompleter tabCompleter = new GroupSystemTabCompleter(dbManager);
 
         Objects.requireNonNull(getCommand("gs")).setExecutor(command);
@@ -199,21 +190,57 @@ public class CustomGroupSystem extends JavaPlugin {
     private void registerEventListeners() {
         PluginManager pluginManager = getServer().getPluginManager();
 
-        pluginManager.registerEvents(new PlayerListener(dbManager, permissionManager, logger), this);
-        pluginManager.registerEvents(new MotdListener(getConfig()), this);
-        pluginManager.registerEvents(new SignListener(dbManager), this);
+        pluginManager.registerEvents(new PlayerListener(dbManager, permissionManager, nameResolver, getConfig(), logger), this);
+        MotdListener motdListener = new MotdListener(getConfig());
+        motdListener.start(this, dbManager);
+        pluginManager.registerEvents(motdListener, this);
+        pluginManager.registerEvents(new SignListener(signRenderer, signManager), this);
+        pluginManager.registerEvents(new PermissionIndexListener(permissionManager), this);
 
         logger.info("Event listeners registered.");
     }
 
-    private void startExpiryCheckTask() {
-        expiryCheckTask = new ExpiryCheckTask(this, dbManager, permissionManager)
-                .runTaskTimerAsynchronously(this, 200L, 200L);
+    private void startExpiryScheduler() {
+        long lookAheadMinutes = getConfig().getLong("expiry.lookahead-minutes", 10);
+
+        expiryScheduler = new ExpiryScheduler(this, dbManager, refreshScheduler, lookAheadMinutes * 60_000L);
+        expiryScheduler.start();
 
-        logger.info("Expiry check task started (runs every 10 seconds)");
+        logger.info("Expiry scheduler started (look-ahead window: " + lookAheadMinutes + " minutes)");
+    }
+
+    private void startChangeLogPoller() {
+        if (!dbManager.isSyncEnabled()) {
+            return;
+        }
+
+        long intervalTicks = getConfig().getLong("sync.poll-interval-ticks", 40);
+        long retentionHours = getConfig().getLong("sync.retention-hours", 24);
+
+        changeLogPoller = new ChangeLogPoller(this, dbManager, refreshScheduler, retentionHours);
+        changeLogPoller.start(intervalTicks);
+
+        logger.info("Cross-server sync enabled (polling every " + intervalTicks + " ticks)");
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public HikariDataSource getDataSource() {
+        return dataSource;
     }
 
     public Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        long start = System.nanoTime();
+        try {
+            return dataSource.getConnection();
+        } finally {
+            connectionLatency.record(System.nanoTime() - start);
+        }
     }
 }
\ No newline at end of file
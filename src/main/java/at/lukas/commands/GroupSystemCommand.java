@@ -1,11 +1,18 @@
 package at.lukas.commands;
 
+import at.lukas.manager.DatabaseExecutor;
 import at.lukas.manager.DatabaseManager;
 import at.lukas.manager.PermissionManager;
+import at.lukas.metrics.CacheStats;
+import at.lukas.metrics.LatencyHistogram;
+import at.lukas.metrics.MetricsRegistry;
 import at.lukas.misc.DurationParser;
-import at.lukas.misc.PlayerHelper;
+import at.lukas.misc.PlayerNameResolver;
+import at.lukas.misc.RefreshScheduler;
+import at.lukas.misc.UserImportReader;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -18,22 +25,34 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import static java.util.logging.Logger.getLogger;
 
 public class GroupSystemCommand implements CommandExecutor {
+    private static final long IMPORT_PROGRESS_INTERVAL_MILLIS = 2000;
+
     private final Logger logger = getLogger(GroupSystemCommand.class.getName());
 
     private final PermissionManager permManager;
     private final DatabaseManager dbManager;
+    private final RefreshScheduler refreshScheduler;
+    private final PlayerNameResolver nameResolver;
     private final Plugin plugin;
     private FileConfiguration messages;
 
-    public GroupSystemCommand(PermissionManager permManager, DatabaseManager dbManager, Plugin plugin) {
+    public GroupSystemCommand(PermissionManager permManager, DatabaseManager dbManager, RefreshScheduler refreshScheduler,
+                              PlayerNameResolver nameResolver, Plugin plugin) {
         this.permManager = permManager;
         this.dbManager = dbManager;
+        this.refreshScheduler = refreshScheduler;
+        this.nameResolver = nameResolver;
         this.plugin = plugin;
         loadMessages();
     }
@@ -84,6 +103,11 @@ public class GroupSystemCommand implements CommandExecutor {
             sender.sendMessage(getMessage("help.adduser"));
             sender.sendMessage(getMessage("help.playerinfo"));
             sender.sendMessage(getMessage("help.setpermission"));
+            sender.sendMessage(getMessage("help.setparent"));
+            sender.sendMessage(getMessage("help.importusers"));
+            sender.sendMessage(getMessage("help.export"));
+            sender.sendMessage(getMessage("help.import"));
+            sender.sendMessage(getMessage("help.stats"));
             return true;
         }
 
@@ -95,6 +119,11 @@ public class GroupSystemCommand implements CommandExecutor {
             case "playerinfo", "pinfo" -> handlePlayerInfo(sender, args);
             case "setpermission", "setperm" -> handleSetPermission(sender, args);
             case "listpermissions", "listperms" -> handleListPermissions(sender, args);
+            case "setparent" -> handleSetParent(sender, args);
+            case "import-users" -> handleImportUsers(sender, args);
+            case "export" -> handleExport(sender, args);
+            case "import" -> handleImport(sender, args);
+            case "stats" -> handleStats(sender, args);
             default -> {
                 sender.sendMessage(getMessage("unknown-subcommand", "subcommand", subcommand));
                 yield true;
@@ -157,24 +186,24 @@ public class GroupSystemCommand implements CommandExecutor {
             return true;
         }
 
+        // Mitglieder und Erben vorher merken, nach dem Löschen stehen die Mitglieder bereits in "default"
+        List<UUID> members = new ArrayList<>(dbManager.getGroupMembers(groupName));
+        Set<String> descendants = dbManager.getDescendantGroups(groupName);
+
         dbManager.deleteGroup(groupName).thenAccept(success -> {
             if (!success) {
                 sender.sendMessage(getMessage("deletegroup.failed", "group", groupName));
             } else {
                 sender.sendMessage(getMessage("deletegroup.success", "group", groupName));
 
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
-                    for (Player player : plugin.getServer().getOnlinePlayers()) {
-                        String playerGroup = dbManager.getPlayerGroup(player.getUniqueId());
-                        if (groupName.equalsIgnoreCase(playerGroup)) {
-                            dbManager.setUserGroup(player.getUniqueId(), "default", null).thenRun(() -> {
-                                permManager.applyPermissions(player);
-                                player.sendMessage("§eYour group was deleted. You are now in the default group.");
-                            });
-                        }
+                for (UUID memberUuid : members) {
+                    Player player = Bukkit.getPlayer(memberUuid);
+                    if (player != null && player.isOnline()) {
+                        player.sendMessage("§eYour group was deleted. You are now in the default group.");
                     }
-                    permManager.refreshPlayersInGroup("default");
-                });
+                }
+                members.forEach(refreshScheduler::markPlayer);
+                descendants.forEach(refreshScheduler::markGroup);
             }
         }).exceptionally(e -> {
             sender.sendMessage(getMessage("deletegroup.error", "error", e.getMessage()));
@@ -218,48 +247,48 @@ public class GroupSystemCommand implements CommandExecutor {
             }
         }
 
-        Player target = Bukkit.getPlayer(playerName);
-        UUID uuid;
-
-        if (target != null) {
-            uuid = target.getUniqueId();
-        } else {
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-            if (!offlinePlayer.hasPlayedBefore()) {
-                sender.sendMessage(getMessage("adduser.player-not-found", "player", playerName));
-                return true;
-            }
-            uuid = offlinePlayer.getUniqueId();
-        }
-
         if (!dbManager.groupExists(groupName)) {
             sender.sendMessage(getMessage("adduser.group-not-found", "group", groupName));
             return true;
         }
 
-        final Player finalTarget = target;
         final Long finalExpiry = expiryMillis;
 
+        // Offline-Namen über den eigenen Namensindex, ohne Profilabfrage auf dem Main-Thread
+        nameResolver.resolve(playerName).thenAccept(uuid -> {
+            if (uuid.equals(PlayerNameResolver.UNKNOWN)) {
+                sender.sendMessage(getMessage("adduser.player-not-found", "player", playerName));
+                return;
+            }
+            addUser(sender, uuid, playerName, groupName, finalExpiry);
+        }).exceptionally(e -> {
+            sender.sendMessage(getMessage("adduser.error", "error", e.getMessage()));
+            plugin.getLogger().severe("Error resolving player " + playerName + ": " + e.getMessage());
+            return null;
+        });
+
+        return true;
+    }
+
+    private void addUser(CommandSender sender, UUID uuid, String playerName, String groupName, Long expiryMillis) {
         dbManager.setUserGroup(uuid, groupName, expiryMillis).thenRun(() -> {
             sender.sendMessage(getMessage("adduser.success", "player", playerName, "group", groupName));
 
-            if (finalExpiry == null) {
+            if (expiryMillis == null) {
                 sender.sendMessage(getMessage("adduser.duration-permanent"));
             } else {
-                long remaining = finalExpiry - System.currentTimeMillis();
+                long remaining = expiryMillis - System.currentTimeMillis();
                 String formatted = DurationParser.formatDuration(remaining);
                 sender.sendMessage(getMessage("adduser.duration-temporary", "duration", formatted));
 
-                String date = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date(finalExpiry));
+                String date = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date(expiryMillis));
                 sender.sendMessage(getMessage("adduser.expires-at", "date", date));
             }
 
-            if (finalTarget != null && finalTarget.isOnline()) {
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    PlayerHelper.applyPrefix(finalTarget, dbManager);
-                    permManager.applyPermissions(finalTarget);
-                });
-            } else {
+            // Auch offline: Schilder mit diesem Spieler müssen neu gerendert werden
+            refreshScheduler.markPlayer(uuid);
+            Player target = Bukkit.getPlayer(uuid);
+            if (target == null || !target.isOnline()) {
                 sender.sendMessage(getMessage("adduser.player-offline"));
             }
         }).exceptionally(e -> {
@@ -267,8 +296,6 @@ public class GroupSystemCommand implements CommandExecutor {
             plugin.getLogger().severe("Error adding user: " + e.getMessage());
             return null;
         });
-
-        return true;
     }
 
     // /gs playerinfo <player>
@@ -285,22 +312,24 @@ public class GroupSystemCommand implements CommandExecutor {
 
         String playerName = args[1];
 
-        Player target = Bukkit.getPlayer(playerName);
-        UUID uuid;
-        String displayName;
-
-        if (target != null) {
-            uuid = target.getUniqueId();
-            displayName = target.getName();
-        } else {
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-            if (!offlinePlayer.hasPlayedBefore()) {
+        nameResolver.resolve(playerName).thenAccept(uuid -> {
+            if (uuid.equals(PlayerNameResolver.UNKNOWN)) {
                 sender.sendMessage(getMessage("playerinfo.player-not-found", "player", playerName));
-                return true;
+                return;
             }
-            uuid = offlinePlayer.getUniqueId();
-            displayName = offlinePlayer.getName() != null ? offlinePlayer.getName() : playerName;
-        }
+            showPlayerInfo(sender, uuid, playerName);
+        }).exceptionally(e -> {
+            sender.sendMessage(getMessage("playerinfo.error", "error", e.getMessage()));
+            plugin.getLogger().severe("Error resolving player " + playerName + ": " + e.getMessage());
+            return null;
+        });
+
+        return true;
+    }
+
+    private void showPlayerInfo(CommandSender sender, UUID uuid, String playerName) {
+        Player target = Bukkit.getPlayer(uuid);
+        String displayName = target != null ? target.getName() : playerName;
 
         String groupName = dbManager.getPlayerGroup(uuid);
         String prefix = dbManager.getPlayerPrefix(uuid);
@@ -335,8 +364,6 @@ public class GroupSystemCommand implements CommandExecutor {
             plugin.getLogger().severe("Error getting player info: " + e.getMessage());
             return null;
         });
-
-        return true;
     }
 
     private boolean handleSetPermission(CommandSender sender, String[] args) {
@@ -372,25 +399,7 @@ public class GroupSystemCommand implements CommandExecutor {
                         "permission", permission,
                         "group", groupName));
 
-                // Log for debugging
-                plugin.getLogger().info("Starting permission refresh for group: " + groupName);
-
-                // Refresh on main thread with delay to ensure DB write is complete
-                plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                    int refreshed = 0;
-                    for (Player player : plugin.getServer().getOnlinePlayers()) {
-                        String playerGroup = dbManager.getPlayerGroup(player.getUniqueId());
-                        plugin.getLogger().info("Player " + player.getName() + " is in group: " + playerGroup);
-
-                        if (groupName.equalsIgnoreCase(playerGroup)) {
-                            plugin.getLogger().info("Refreshing permissions for: " + player.getName());
-                            permManager.applyPermissions(player);
-                            refreshed++;
-                        }
-                    }
-                    plugin.getLogger().info("Refreshed " + refreshed + " player(s) in group " + groupName);
-                }, 10L); // 0.5 second delay
-
+                refreshScheduler.markGroup(groupName);
             }).exceptionally(e -> {
                 sender.sendMessage(getMessage("setpermission.error", "error", e.getMessage()));
                 logger.severe("Error adding permission: " + e.getMessage());
@@ -404,14 +413,7 @@ public class GroupSystemCommand implements CommandExecutor {
                             "permission", permission,
                             "group", groupName));
 
-                    plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                        for (Player player : plugin.getServer().getOnlinePlayers()) {
-                            String playerGroup = dbManager.getPlayerGroup(player.getUniqueId());
-                            if (groupName.equalsIgnoreCase(playerGroup)) {
-                                permManager.applyPermissions(player);
-                            }
-                        }
-                    }, 10L);
+                    refreshScheduler.markGroup(groupName);
                 } else {
                     sender.sendMessage(getMessage("setpermission.not-found",
                             "permission", permission,
@@ -446,8 +448,13 @@ public class GroupSystemCommand implements CommandExecutor {
             return true;
         }
 
+        List<String> parents = dbManager.getParentGroups(groupName);
+
         dbManager.getGroupPermissions(groupName).thenAccept(permissions -> {
             sender.sendMessage(getMessage("listpermissions.header", "group", groupName));
+            if (!parents.isEmpty()) {
+                sender.sendMessage(getMessage("listpermissions.parents", "parents", String.join(", ", parents)));
+            }
 
             if (permissions.isEmpty()) {
                 sender.sendMessage(getMessage("listpermissions.none"));
@@ -466,14 +473,276 @@ public class GroupSystemCommand implements CommandExecutor {
         return true;
     }
 
-    private void refreshGroupPlayers(String groupName) {
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            for (Player player : plugin.getServer().getOnlinePlayers()) {
-                String playerGroup = dbManager.getPlayerGroup(player.getUniqueId());
-                if (groupName.equalsIgnoreCase(playerGroup)) {
-                    permManager.applyPermissions(player);
-                }
+    // /gs setparent <group> <parent> <true/false>
+    private boolean handleSetParent(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("groupsystem.admin.setparent")) {
+            sender.sendMessage(getMessage("no-permission"));
+            return true;
+        }
+
+        if (args.length < 4) {
+            sender.sendMessage(getMessage("setparent.usage"));
+            return true;
+        }
+
+        String groupName = args[1].toLowerCase();
+        String parentName = args[2].toLowerCase();
+        String action = args[3].toLowerCase();
+
+        if (!action.equals("true") && !action.equals("false")) {
+            sender.sendMessage(getMessage("setparent.invalid-action"));
+            return true;
+        }
+
+        boolean add = action.equals("true");
+
+        for (String name : List.of(groupName, parentName)) {
+            if (!dbManager.groupExists(name)) {
+                sender.sendMessage(getMessage("setparent.group-not-found", "group", name));
+                return true;
+            }
+        }
+
+        dbManager.setGroupParent(groupName, parentName, add).thenAccept(changed -> {
+            if (!changed) {
+                sender.sendMessage(getMessage(add ? "setparent.already-set" : "setparent.not-set",
+                        "group", groupName,
+                        "parent", parentName));
+                return;
+            }
+
+            sender.sendMessage(getMessage(add ? "setparent.added" : "setparent.removed",
+                    "group", groupName,
+                    "parent", parentName));
+
+            // Erben von groupName werden vom RefreshScheduler mitgenommen
+            refreshScheduler.markGroup(groupName);
+        }).exceptionally(e -> {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IllegalArgumentException) {
+                sender.sendMessage(getMessage("setparent.cycle", "group", groupName, "parent", parentName));
+            } else {
+                sender.sendMessage(getMessage("setparent.error", "error", cause.getMessage()));
+                logger.severe("Error updating group inheritance: " + cause.getMessage());
+            }
+            return null;
+        });
+
+        return true;
+    }
+
+    // /gs import-users <file>
+    private boolean handleImportUsers(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("groupsystem.admin.importusers")) {
+            sender.sendMessage(getMessage("no-permission"));
+            return true;
+        }
+
+        if (args.length != 2) {
+            sender.sendMessage(getMessage("importusers.usage"));
+            return true;
+        }
+
+        Path file = resolveDataFile(args[1]);
+        if (file == null || !Files.isRegularFile(file)) {
+            sender.sendMessage(getMessage("importusers.file-not-found", "file", args[1]));
+            return true;
+        }
+
+        try {
+            UserImportReader.Format.of(file);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(getMessage("importusers.invalid-format", "file", args[1]));
+            return true;
+        }
+
+        sender.sendMessage(getMessage("importusers.started", "file", args[1]));
+
+        AtomicLong lastReport = new AtomicLong(System.currentTimeMillis());
+        dbManager.importUsers(file, progress -> {
+            long now = System.currentTimeMillis();
+            long last = lastReport.get();
+            if (now - last >= IMPORT_PROGRESS_INTERVAL_MILLIS && lastReport.compareAndSet(last, now)) {
+                sender.sendMessage(getMessage("importusers.progress",
+                        "imported", progress.imported(),
+                        "skipped", progress.skipped()));
+            }
+        }).thenAccept(result -> {
+            for (String error : result.errors()) {
+                sender.sendMessage(getMessage("importusers.invalid-row", "error", error));
+            }
+            sender.sendMessage(getMessage("importusers.success",
+                    "imported", result.imported(),
+                    "skipped", result.skipped(),
+                    "online", result.loadedPlayers().size()));
+
+            // Einmal am Ende, nur Spieler, die gerade geladen sind
+            for (UUID uuid : result.loadedPlayers()) {
+                refreshScheduler.markPlayer(uuid);
             }
+        }).exceptionally(e -> {
+            sender.sendMessage(getMessage("importusers.error", "error", e.getMessage()));
+            plugin.getLogger().severe("Error importing users from " + args[1] + ": " + e.getMessage());
+            return null;
         });
+
+        return true;
+    }
+
+    // /gs export [file]
+    private boolean handleExport(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("groupsystem.admin.export")) {
+            sender.sendMessage(getMessage("no-permission"));
+            return true;
+        }
+
+        if (args.length > 2) {
+            sender.sendMessage(getMessage("export.usage"));
+            return true;
+        }
+
+        String fileName = args.length == 2
+                ? args[1]
+                : "groups-" + new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date()) + ".cgsd";
+        Path file = resolveDataFile(fileName);
+        if (file == null) {
+            sender.sendMessage(getMessage("export.invalid-file", "file", fileName));
+            return true;
+        }
+
+        sender.sendMessage(getMessage("export.started", "file", fileName));
+
+        dbManager.exportDataset(file).thenAccept(counts -> sender.sendMessage(getMessage("export.success",
+                "file", fileName,
+                "groups", counts.groups(),
+                "parents", counts.parents(),
+                "permissions", counts.permissions(),
+                "players", counts.players()))
+        ).exceptionally(e -> {
+            sender.sendMessage(getMessage("export.error", "error", e.getMessage()));
+            plugin.getLogger().severe("Error exporting to " + fileName + ": " + e.getMessage());
+            return null;
+        });
+
+        return true;
+    }
+
+    // /gs import <file>
+    private boolean handleImport(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("groupsystem.admin.import")) {
+            sender.sendMessage(getMessage("no-permission"));
+            return true;
+        }
+
+        if (args.length != 2) {
+            sender.sendMessage(getMessage("import.usage"));
+            return true;
+        }
+
+        Path file = resolveDataFile(args[1]);
+        if (file == null || !Files.isRegularFile(file)) {
+            sender.sendMessage(getMessage("import.file-not-found", "file", args[1]));
+            return true;
+        }
+
+        sender.sendMessage(getMessage("import.started", "file", args[1]));
+
+        dbManager.importDataset(file).thenAccept(counts -> {
+            sender.sendMessage(getMessage("import.success",
+                    "file", args[1],
+                    "groups", counts.groups(),
+                    "parents", counts.parents(),
+                    "permissions", counts.permissions(),
+                    "players", counts.players()));
+            refreshScheduler.markAll();
+        }).exceptionally(e -> {
+            sender.sendMessage(getMessage("import.error", "error", e.getMessage()));
+            plugin.getLogger().severe("Error importing " + args[1] + ": " + e.getMessage());
+            return null;
+        });
+
+        return true;
+    }
+
+    // Dateien nur innerhalb des Plugin-Ordners, null sonst
+    private Path resolveDataFile(String name) {
+        Path dataFolder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+        Path file = dataFolder.resolve(name).normalize();
+        return file.startsWith(dataFolder) && !file.equals(dataFolder) ? file : null;
+    }
+
+    // /gs stats [reset]
+    private boolean handleStats(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("groupsystem.admin.stats")) {
+            sender.sendMessage(getMessage("no-permission"));
+            return true;
+        }
+
+        MetricsRegistry metrics = dbManager.getMetrics();
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            sender.sendMessage(getMessage("stats.reset"));
+            return true;
+        }
+
+        sender.sendMessage(getMessage("stats.header"));
+
+        HikariDataSource dataSource = dbManager.getPlugin().getDataSource();
+        HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        if (pool != null) {
+            sender.sendMessage(getMessage("stats.pool",
+                    "active", pool.getActiveConnections(),
+                    "idle", pool.getIdleConnections(),
+                    "pending", pool.getThreadsAwaitingConnection(),
+                    "max", dataSource.getMaximumPoolSize()));
+        }
+
+        DatabaseExecutor executor = dbManager.getExecutor();
+        LatencyHistogram.Snapshot wait = executor.getWaitLatency().snapshot();
+        sender.sendMessage(getMessage("stats.executor",
+                "mode", executor.getMode().name().toLowerCase(),
+                "queued", executor.getQueueDepth(),
+                "pending", dbManager.getPendingWrites(),
+                "p50", MetricsRegistry.formatNanos(wait.p50()),
+                "p99", MetricsRegistry.formatNanos(wait.p99()),
+                "max", MetricsRegistry.formatNanos(wait.max())));
+
+        for (CacheStats cache : metrics.getCaches()) {
+            long hits = cache.getHits();
+            sender.sendMessage(getMessage("stats.cache",
+                    "cache", cache.getName(),
+                    "ratio", String.format("%.1f", cache.getHitRatio() * 100),
+                    "hits", hits,
+                    "total", hits + cache.getMisses()));
+        }
+
+        for (String groupName : dbManager.getAllGroups()) {
+            sender.sendMessage(getMessage("stats.group",
+                    "group", groupName,
+                    "members", dbManager.getGroupMemberCount(groupName)));
+        }
+
+        boolean anyQuery = false;
+        for (LatencyHistogram histogram : metrics.getHistograms()) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            if (snapshot.count() == 0 || histogram == executor.getWaitLatency()) {
+                continue;
+            }
+
+            anyQuery = true;
+            sender.sendMessage(getMessage("stats.query",
+                    "query", histogram.getName(),
+                    "count", snapshot.count(),
+                    "p50", MetricsRegistry.formatNanos(snapshot.p50()),
+                    "p99", MetricsRegistry.formatNanos(snapshot.p99()),
+                    "max", MetricsRegistry.formatNanos(snapshot.max())));
+        }
+
+        if (!anyQuery) {
+            sender.sendMessage(getMessage("stats.no-queries"));
+        }
+
+        return true;
     }
-}
\ No newline at end of file
+}
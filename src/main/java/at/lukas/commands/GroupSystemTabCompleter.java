@@ -33,9 +33,14 @@ public class GroupSystemTabCompleter implements TabCompleter {
                     "setperm",
                     "listpermissions",
                     "listperms",
+                    "setparent",
                     "adduser",
                     "playerinfo",
-                    "pinfo"
+                    "pinfo",
+                    "import-users",
+                    "export",
+                    "import",
+                    "stats"
             );
 
             return subcommands.stream()
@@ -47,12 +52,20 @@ public class GroupSystemTabCompleter implements TabCompleter {
             String subcommand = args[0].toLowerCase();
 
             return switch (subcommand) {
-                case "deletegroup", "setpermission", "setperm", "listpermissions", "listperms" ->
+                case "deletegroup", "setpermission", "setperm", "listpermissions", "listperms", "setparent" ->
                         getGroupCompletions(args[1]);
                 case "adduser", "playerinfo", "pinfo" ->
                         getPlayerCompletions(args[1]);
                 case "creategroup" ->
                         List.of("<n>");
+                case "import-users" ->
+                        getDataFileCompletions(args[1], ".csv", ".ndjson", ".jsonl");
+                case "import" ->
+                        getDataFileCompletions(args[1], ".cgsd");
+                case "stats" ->
+                        Stream.of("reset")
+                                .filter(val -> val.startsWith(args[1].toLowerCase()))
+                                .collect(Collectors.toList());
                 default ->
                         completions;
             };
@@ -64,7 +77,7 @@ public class GroupSystemTabCompleter implements TabCompleter {
             return switch (subcommand) {
                 case "creategroup" ->
                         List.of("<prefix>");
-                case "adduser" ->
+                case "adduser", "setparent" ->
                         getGroupCompletions(args[2]);
                 case "setpermission", "setperm" ->
                         getPermissionSuggestions(args[2]);
@@ -76,7 +89,7 @@ public class GroupSystemTabCompleter implements TabCompleter {
         if (args.length == 4) {
             String subcommand = args[0].toLowerCase();
 
-            if (subcommand.equals("setpermission") || subcommand.equals("setperm")) {
+            if (subcommand.equals("setpermission") || subcommand.equals("setperm") || subcommand.equals("setparent")) {
                 return Stream.of("true", "false")
                         .filter(val -> val.startsWith(args[3].toLowerCase()))
                         .collect(Collectors.toList());
@@ -101,6 +114,18 @@ public class GroupSystemTabCompleter implements TabCompleter {
         }
     }
 
+    private List<String> getDataFileCompletions(String partial, String... extensions) {
+        String[] files = dbManager.getPlugin().getDataFolder().list((dir, name) ->
+                Arrays.stream(extensions).anyMatch(name::endsWith));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        return Arrays.stream(files)
+                .filter(name -> name.toLowerCase().startsWith(partial.toLowerCase()))
+                .collect(Collectors.toList());
+    }
+
     private List<String> getPlayerCompletions(String partial) {
         return Bukkit.getOnlinePlayers().stream()
                 .map(Player::getName)
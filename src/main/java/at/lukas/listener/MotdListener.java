@@ -1,28 +1,186 @@
 package at.lukas.listener;
 
+import at.lukas.manager.DatabaseManager;
 import com.destroystokyo.paper.event.server.PaperServerListPingEvent;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Beantwortet Server-List-Pings mit einer vorab gerenderten MOTD.
+ * <p>
+ * Statische Zeilen werden einmal geparst. Zeilen mit Platzhaltern ({online}, {max},
+ * {group:admin,mod}) und die Rotation über motd-lines werden alle motd-refresh-seconds
+ * neu gerendert. Ein Ping liest nur noch das aktuelle Component.
+ */
 public class MotdListener implements Listener {
-    private final String motd;
+    private static final long DEFAULT_REFRESH_SECONDS = 10;
+
+    private final List<MotdTemplate> templates = new ArrayList<>();
+    private final long refreshSeconds;
+
+    private volatile Component current;
 
     public MotdListener(FileConfiguration config) {
-        motd = config.getString("motd");
+        List<String> lines = config.getStringList("motd-lines");
+        if (lines.isEmpty()) {
+            String motd = config.getString("motd");
+            if (motd != null) {
+                lines = List.of(motd);
+            }
+        }
+
+        for (String line : lines) {
+            templates.add(MotdTemplate.compile(line));
+        }
+
+        long configured = config.getLong("motd-refresh-seconds", DEFAULT_REFRESH_SECONDS);
+        refreshSeconds = configured > 0 ? configured : DEFAULT_REFRESH_SECONDS;
+
+        if (!templates.isEmpty()) {
+            current = templates.get(0).render(null);
+        }
+    }
+
+    /**
+     * Startet das regelmäßige Neu-Rendern, falls es Platzhalter oder mehrere Zeilen gibt.
+     */
+    public void start(Plugin plugin, DatabaseManager dbManager) {
+        if (!isDynamic()) {
+            return;
+        }
+
+        long periodTicks = refreshSeconds * 20L;
+        Bukkit.getScheduler().runTaskTimer(plugin, () -> refresh(dbManager), 0L, periodTicks);
+    }
+
+    private boolean isDynamic() {
+        if (templates.size() > 1) {
+            return true;
+        }
+        return !templates.isEmpty() && !templates.get(0).isStatic();
+    }
+
+    private void refresh(DatabaseManager dbManager) {
+        MotdTemplate template = templates.get(ThreadLocalRandom.current().nextInt(templates.size()));
+        current = template.render(dbManager);
     }
 
     @EventHandler
     public void onPing(PaperServerListPingEvent event) {
+        Component motd = current;
         if (motd == null) {
             return;
         }
 
-        Component colorCodedMotd = LegacyComponentSerializer.legacyAmpersand()
-                .deserialize(motd);
+        event.motd(motd);
+    }
+
+    /**
+     * Eine MOTD-Zeile, einmal in Text- und Platzhalter-Teile zerlegt.
+     */
+    private static final class MotdTemplate {
+        private final String[] literals;
+        private final String[][] groupLists;
+        private final Placeholder[] placeholders;
+        private final Component staticComponent;
+
+        private enum Placeholder { ONLINE, MAX, GROUP }
+
+        private MotdTemplate(String[] literals, Placeholder[] placeholders, String[][] groupLists) {
+            this.literals = literals;
+            this.placeholders = placeholders;
+            this.groupLists = groupLists;
+            this.staticComponent = placeholders.length == 0
+                    ? LegacyComponentSerializer.legacyAmpersand().deserialize(literals[0])
+                    : null;
+        }
+
+        static MotdTemplate compile(String line) {
+            List<String> literals = new ArrayList<>();
+            List<Placeholder> placeholders = new ArrayList<>();
+            List<String[]> groupLists = new ArrayList<>();
+
+            StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < line.length()) {
+                char c = line.charAt(i);
+                int end = c == '{' ? line.indexOf('}', i) : -1;
+                Placeholder placeholder = end > 0 ? parse(line.substring(i + 1, end)) : null;
+
+                if (placeholder == null) {
+                    literal.append(c);
+                    i++;
+                    continue;
+                }
+
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders.add(placeholder);
+                groupLists.add(placeholder == Placeholder.GROUP
+                        ? line.substring(i + "{group:".length(), end).split(",")
+                        : null);
+                i = end + 1;
+            }
+            literals.add(literal.toString());
 
-        event.motd(colorCodedMotd);
+            return new MotdTemplate(
+                    literals.toArray(String[]::new),
+                    placeholders.toArray(Placeholder[]::new),
+                    groupLists.toArray(String[][]::new));
+        }
+
+        private static Placeholder parse(String key) {
+            if (key.equals("online")) {
+                return Placeholder.ONLINE;
+            }
+            if (key.equals("max")) {
+                return Placeholder.MAX;
+            }
+            if (key.startsWith("group:") && key.length() > "group:".length()) {
+                return Placeholder.GROUP;
+            }
+            return null;
+        }
+
+        boolean isStatic() {
+            return staticComponent != null;
+        }
+
+        Component render(DatabaseManager dbManager) {
+            if (staticComponent != null) {
+                return staticComponent;
+            }
+            if (dbManager == null) {
+                // Vor dem ersten Refresh: Platzhalter leer lassen
+                return LegacyComponentSerializer.legacyAmpersand().deserialize(String.join("", literals));
+            }
+
+            StringBuilder text = new StringBuilder(literals[0]);
+            for (int p = 0; p < placeholders.length; p++) {
+                switch (placeholders[p]) {
+                    case ONLINE -> text.append(Bukkit.getOnlinePlayers().size());
+                    case MAX -> text.append(Bukkit.getMaxPlayers());
+                    case GROUP -> {
+                        int members = 0;
+                        for (String group : groupLists[p]) {
+                            members += dbManager.getGroupMemberCount(group.trim());
+                        }
+                        text.append(members);
+                    }
+                }
+                text.append(literals[p + 1]);
+            }
+
+            return LegacyComponentSerializer.legacyAmpersand().deserialize(text.toString());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package at.lukas.listener;
+
+import at.lukas.manager.PermissionManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.server.ServerLoadEvent;
+
+/**
+ * Hält den Permission-Index aktuell, wenn Plugins nach uns geladen oder entladen werden.
+ */
+public class PermissionIndexListener implements Listener {
+    private final PermissionManager permissionManager;
+
+    public PermissionIndexListener(PermissionManager permissionManager) {
+        this.permissionManager = permissionManager;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerLoad(ServerLoadEvent event) {
+        // Erfasst auch Permissions, die Plugins zur Laufzeit per addPermission registriert haben
+        permissionManager.rebuildPermissionIndex();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        permissionManager.indexPermissions(event.getPlugin().getDescription().getPermissions());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        permissionManager.unindexPermissions(event.getPlugin().getDescription().getPermissions());
+    }
+}
@@ -3,79 +3,198 @@ package at.lukas.listener;
 import at.lukas.manager.DatabaseManager;
 import at.lukas.manager.PermissionManager;
 import at.lukas.misc.PlayerHelper;
+import at.lukas.misc.PlayerNameResolver;
+import at.lukas.model.PlayerData;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
+/**
+ * Lädt die Gruppendaten bereits im AsyncPlayerPreLoginEvent, damit der Join selbst nur
+ * noch das fertige Ergebnis anwendet.
+ * <p>
+ * Antwortet die Datenbank nicht innerhalb von join.prefetch-timeout-ms, wird je nach
+ * join.on-timeout der Login abgelehnt ("deny") oder der Spieler mit der Standardgruppe
+ * eingelassen und nachträglich aktualisiert ("default").
+ */
 public class PlayerListener implements Listener {
 
     private final DatabaseManager dbManager;
     private final PermissionManager permissionManager;
+    private final PlayerNameResolver nameResolver;
     private final Logger logger;
 
-    public PlayerListener(DatabaseManager dbManager, PermissionManager permissionManager, Logger logger) {
+    private final long prefetchTimeoutMillis;
+    private final boolean denyOnTimeout;
+    private final Component denyMessage;
+
+    private final Map<UUID, CompletableFuture<PlayerData>> prefetched = new ConcurrentHashMap<>();
+
+    public PlayerListener(DatabaseManager dbManager, PermissionManager permissionManager, PlayerNameResolver nameResolver, FileConfiguration config, Logger logger) {
         this.dbManager = dbManager;
         this.permissionManager = permissionManager;
+        this.nameResolver = nameResolver;
         this.logger = logger;
+
+        this.prefetchTimeoutMillis = config.getLong("join.prefetch-timeout-ms", 3000);
+        this.denyOnTimeout = "deny".equalsIgnoreCase(config.getString("join.on-timeout", "default"));
+        this.denyMessage = LegacyComponentSerializer.legacyAmpersand().deserialize(
+                config.getString("join.deny-message", "&cYour data could not be loaded. Please try again."));
+    }
+
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        UUID uuid = event.getUniqueId();
+        CompletableFuture<PlayerData> future = dbManager.loadPlayerData(uuid).whenComplete((data, e) -> {
+            if (e != null) {
+                logger.severe("Error loading player data for " + event.getName() + ": " + e.getMessage());
+            }
+        });
+
+        try {
+            future.get(prefetchTimeoutMillis, TimeUnit.MILLISECONDS);
+            prefetched.put(uuid, future);
+            return;
+        } catch (TimeoutException e) {
+            logger.warning("Loading player data for " + event.getName() + " timed out after " + prefetchTimeoutMillis + "ms");
+        } catch (ExecutionException e) {
+            // Bereits oben geloggt
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Kommt das Laden erst an, wenn der Spieler gar nicht (mehr) da ist, darf es nicht im Cache bleiben
+        future.whenComplete((data, e) -> unloadIfAbsent(uuid));
+
+        if (denyOnTimeout) {
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, denyMessage);
+            return;
+        }
+
+        // Bis zum Join mit der Standardgruppe, der Join wendet die echten Daten an, sobald sie da sind
+        PlayerData fallback = dbManager.useDefaultPlayerData(uuid);
+        prefetched.put(uuid, future.exceptionally(e -> fallback));
+    }
+
+    /**
+     * Entfernt einen verspätet geladenen Spieler wieder aus dem Cache, wenn er weder online ist
+     * noch auf seinen Join wartet. Läuft auf dem Main-Thread, damit ein gerade laufender Quit
+     * schon abgeschlossen ist.
+     */
+    private void unloadIfAbsent(UUID uuid) {
+        if (!dbManager.getPlugin().isEnabled()) {
+            return;
+        }
+
+        Bukkit.getScheduler().runTask(dbManager.getPlugin(), () -> {
+            if (Bukkit.getPlayer(uuid) == null && !prefetched.containsKey(uuid)) {
+                dbManager.unloadPlayer(uuid);
+            }
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginResult(AsyncPlayerPreLoginEvent event) {
+        // Ein anderes Plugin kann den Login nach uns noch ablehnen
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            discardPrefetched(event.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            discardPrefetched(event.getPlayer().getUniqueId());
+        }
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
 
-        event.joinMessage(null);
-
-        dbManager.loadPlayerGroup(player.getUniqueId()).thenRun(() -> {
-            Bukkit.getScheduler().runTask(dbManager.getPlugin(), () -> {
-                if (player.isOnline()) {
-                    PlayerHelper.applyPrefix(player, dbManager);
-                    permissionManager.applyPermissions(player);
-
-                    String prefix = dbManager.getPlayerPrefix(player.getUniqueId());
-                    broadcastPlayerJoinMessage(player);
-                }
-            });
-        }).exceptionally(e -> {
-            logger.severe("Error loading player data for " + player.getName() + ": " + e.getMessage());
+        nameResolver.playerJoined(player.getUniqueId(), player.getName());
+        dbManager.recordPlayerName(player.getUniqueId(), player.getName());
 
-            dbManager.setUserGroup(player.getUniqueId(), "default", null).thenRun(() -> {
-                Bukkit.getScheduler().runTask(dbManager.getPlugin(), () -> {
+        CompletableFuture<PlayerData> pending = prefetched.remove(player.getUniqueId());
+        if (pending != null) {
+            PlayerData data = pending.getNow(null);
+            if (data == null) {
+                // Die echten Daten kommen noch (join.on-timeout: default) - erst die Standardgruppe, dann nachziehen
+                data = dbManager.useDefaultPlayerData(player.getUniqueId());
+                pending.thenAccept(loaded -> Bukkit.getScheduler().runTask(dbManager.getPlugin(), () -> {
                     if (player.isOnline()) {
                         PlayerHelper.applyPrefix(player, dbManager);
-                        permissionManager.applyPermissions(player);
-
-                        String prefix = dbManager.getPlayerPrefix(player.getUniqueId());
-                        broadcastPlayerJoinMessage(player);
+                        permissionManager.applyPermissions(player, loaded.getPermissions());
                     }
-                });
-            });
+                }));
+            }
 
-            return null;
-        });
+            PlayerHelper.applyPrefix(player, dbManager);
+            permissionManager.applyPermissions(player, data.getPermissions());
+            event.joinMessage(joinMessage(player));
+            return;
+        }
+
+        // Kein Prefetch (z.B. Plugin wurde während des Logins geladen) - wie früher asynchron nachladen
+        event.joinMessage(null);
+
+        dbManager.loadPlayerData(player.getUniqueId()).exceptionally(e -> {
+            logger.severe("Error loading player data for " + player.getName() + ": " + e.getMessage());
+            return dbManager.useDefaultPlayerData(player.getUniqueId());
+        }).thenAccept(loaded -> Bukkit.getScheduler().runTask(dbManager.getPlugin(), () -> {
+            if (player.isOnline()) {
+                PlayerHelper.applyPrefix(player, dbManager);
+                permissionManager.applyPermissions(player, loaded.getPermissions());
+                Bukkit.broadcast(joinMessage(player));
+            } else if (Bukkit.getPlayer(player.getUniqueId()) == null) {
+                dbManager.unloadPlayer(player.getUniqueId());
+            }
+        }));
     }
 
-    private void broadcastPlayerJoinMessage(Player player) {
-        Component joinMessage = player.displayName()
+    private Component joinMessage(Player player) {
+        return player.displayName()
                 .append(Component.text(" joined the server", NamedTextColor.YELLOW));
-        Bukkit.broadcast(joinMessage);
+    }
+
+    private void discardPrefetched(UUID uuid) {
+        if (prefetched.remove(uuid) != null) {
+            dbManager.unloadPlayer(uuid);
+        }
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
 
-        String prefix = dbManager.getPlayerPrefix(player.getUniqueId());
         event.quitMessage(player.displayName().append(Component.text(" left the server", NamedTextColor.YELLOW)));
 
+        prefetched.remove(player.getUniqueId());
+        nameResolver.playerQuit(player.getUniqueId(), player.getName());
         dbManager.unloadPlayer(player.getUniqueId());
         permissionManager.removePermissions(player);
     }
-}
\ No newline at end of file
+}
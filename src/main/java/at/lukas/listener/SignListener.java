@@ -1,140 +1,79 @@
 package at.lukas.listener;
 
-import at.lukas.manager.DatabaseManager;
+import at.lukas.manager.SignManager;
+import at.lukas.misc.SignRenderer;
+import at.lukas.misc.SignTemplate;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.SignChangeEvent;
-
-import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-/**
- * Platzhalter:
- * - %PlayerName%
- * - %PlayerName%group%
- * <p>
- * Beispiele:
- * - %Luggez% → [Admin] Luggez
- * - %Steve% → [Member] Steve
- * - %Steve%group% → [Member]
- * - %Luggez%group% → [Admin]
- */
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
 /**
- * Limitation: Schild platziert -> Groupwechsel -> Schild zeigt nocht alte Rolle
+ * Rendert Platzhalter-Schilder beim Beschreiben (siehe {@link SignRenderer}) und meldet sie
+ * beim {@link SignManager} an, der sie bei Gruppenänderungen aktuell hält. Die Zeilen werden
+ * dabei einmal zu einem {@link SignTemplate} kompiliert.
  */
 public class SignListener implements Listener {
-    private final DatabaseManager dbManager;
+    private final SignRenderer renderer;
+    private final SignManager signManager;
 
-    private static final Pattern PLAYER_NAME_PATTERN = Pattern.compile("%([A-Za-z0-9_]+)%");
-    private static final Pattern PLAYER_GROUP_PATTERN = Pattern.compile("%([A-Za-z0-9_]+)%group%");
-
-    public SignListener(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
+    public SignListener(SignRenderer renderer, SignManager signManager) {
+        this.renderer = renderer;
+        this.signManager = signManager;
     }
 
     @EventHandler
     public void onSignChange(SignChangeEvent event) {
-        Player placer = event.getPlayer();
+        String[] rawLines = {"", "", "", ""};
 
         for (int i = 0; i < 4; i++) {
             Component line = event.line(i);
-            if (line == null) continue;
-
-            String plainText = LegacyComponentSerializer.legacySection().serialize(line);
-
-            if (!plainText.contains("%")) {
-                continue;
+            if (line != null) {
+                // Rohzeilen mit &-Codes, im selben Format rendert der SignRenderer sie später wieder
+                rawLines[i] = LegacyComponentSerializer.legacyAmpersand().serialize(line);
             }
-
-            String processedText = processPlaceholders(plainText, placer);
-            Component newLine = LegacyComponentSerializer.legacyAmpersand().deserialize(processedText);
-            event.line(i, newLine);
         }
-    }
-
-    private String processPlaceholders(String text, Player placer) {
-        String result = text;
-        result = replaceGroupPlaceholders(result);
-        result = replaceNamePlaceholders(result);
-        return result;
-    }
-
-    private String replaceGroupPlaceholders(String text) {
-        Matcher matcher = PLAYER_GROUP_PATTERN.matcher(text);
-        StringBuilder result = new StringBuilder();
-
-        while (matcher.find()) {
-            String playerName = matcher.group(1);
-            String replacement = getPlayerGroupPrefix(playerName);
-            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
-        }
-
-        matcher.appendTail(result);
-        return result.toString();
-    }
 
-    private String replaceNamePlaceholders(String text) {
-        Matcher matcher = PLAYER_NAME_PATTERN.matcher(text);
-        StringBuilder result = new StringBuilder();
-
-        while (matcher.find()) {
-            String playerName = matcher.group(1);
-            String replacement = getPlayerWithPrefix(playerName);
-            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        SignTemplate template = SignTemplate.compile(rawLines);
+        if (!template.hasPlaceholders()) {
+            // Ein bearbeitetes Platzhalter-Schild soll den neuen Text behalten
+            signManager.untrackSide(event.getBlock(), event.getSide());
+            return;
         }
 
-        matcher.appendTail(result);
-        return result.toString();
-    }
-
-    private String getPlayerWithPrefix(String playerName) {
-        UUID playerUuid = getPlayerUUID(playerName);
-
-        if (playerUuid == null) {
-            return "&c[Unknown]";
+        SignRenderer.RenderedSign rendered = renderer.render(template);
+        Component[] lines = rendered.lines();
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] != null) {
+                event.line(i, lines[i]);
+            }
         }
 
-        String prefix = dbManager.getPlayerPrefix(playerUuid);
-        if (prefix == null || prefix.isEmpty()) {
-            prefix = "&7";
+        // Unbekannte Namen schon jetzt im Hintergrund laden, der SignManager rendert danach neu
+        if (!rendered.unresolved().isEmpty()) {
+            renderer.resolve(rendered.unresolved());
         }
 
-        return prefix + playerName;
+        signManager.track(event.getBlock(), event.getSide(), rawLines);
     }
 
-    private String getPlayerGroupPrefix(String playerName) {
-        UUID playerUuid = getPlayerUUID(playerName);
-
-        if (playerUuid == null) {
-            return "&c[Unknown]";
-        }
-
-        String prefix = dbManager.getPlayerPrefix(playerUuid);
-        if (prefix != null && !prefix.isEmpty()) {
-            return prefix;
-        }
-
-        return "&7[Member]";
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        signManager.untrack(event.getBlock());
     }
 
-    private UUID getPlayerUUID(String playerName) {
-        Player onlinePlayer = Bukkit.getPlayer(playerName);
-        if (onlinePlayer != null) {
-            return onlinePlayer.getUniqueId();
-        }
-
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-        if (offlinePlayer.hasPlayedBefore()) {
-            return offlinePlayer.getUniqueId();
-        }
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        signManager.loadChunk(event.getChunk());
+    }
 
-        return null;
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        signManager.unloadChunk(event.getChunk());
     }
-}
\ No newline at end of file
+}
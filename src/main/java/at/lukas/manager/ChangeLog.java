@@ -0,0 +1,283 @@
+package at.lukas.manager;
+
+import at.lukas.misc.UuidCodec;
+import at.lukas.storage.Storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Änderungsprotokoll für mehrere Server an einer Datenbank (Tabelle group_change_log).
+ * <p>
+ * Jede schreibende Operation hängt eine Zeile mit fortlaufender Sequenznummer an. Jeder Server
+ * liest nur die Zeilen nach seiner zuletzt gesehenen Nummer und invalidiert gezielt seine Caches.
+ * Eigene Einträge werden anhand der serverId übersprungen.
+ * <p>
+ * Eine Lücke in den Sequenznummern, die länger als sync.gap-timeout-seconds offen bleibt, hält den
+ * Watermark nicht länger auf. Sie wird aber gemerkt und bei jedem Poll erneut abgefragt, bis sie
+ * aus dem Aufbewahrungsfenster fällt. Ein Schreiber, der erst sehr spät committed, geht so nicht verloren.
+ */
+public class ChangeLog {
+    public enum ChangeType {
+        GROUP_CREATED,
+        GROUP_DELETED,
+        PERMISSIONS_CHANGED,
+        PLAYER_GROUP_CHANGED,
+        // /gs import: alle geladenen Spieler neu laden
+        DATASET_IMPORTED
+    }
+
+    public record Change(long seq, String serverId, ChangeType type, String groupName, UUID playerUuid) {
+    }
+
+    /**
+     * Ergebnis eines Polls: Gruppen und Spieler, die neu angewendet werden müssen.
+     */
+    public record Invalidation(Set<String> groups, Set<UUID> players) {
+        public boolean isEmpty() {
+            return groups.isEmpty() && players.isEmpty();
+        }
+    }
+
+    private static final String INSERT_QUERY = """
+            INSERT INTO group_change_log (server_id, change_type, group_name, player_uuid)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    // Mehr übersprungene Lücken werden nicht nachgefragt, die ältesten fallen dann heraus
+    private static final int MAX_SKIPPED_GAPS = 256;
+
+    // Übersprungener Bereich [from, to], seit skippedAt nicht mehr Teil des Watermarks
+    private record Gap(long from, long to, long skippedAt) {
+    }
+
+    private final Storage storage;
+    private final long gapTimeoutMillis;
+    private final long retentionMillis;
+    private final String serverId = UUID.randomUUID().toString();
+    // Alles bis einschließlich watermark ist verarbeitet, darüber merken wir uns einzelne Nummern
+    private long watermark;
+    private final NavigableSet<Long> seenAboveWatermark = new TreeSet<>();
+    private long gapSince;
+    private final List<Gap> skippedGaps = new ArrayList<>();
+
+    public ChangeLog(Storage storage, long gapTimeoutMillis, long retentionMillis) {
+        this.storage = storage;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.retentionMillis = retentionMillis;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    public void append(Connection conn, ChangeType type, String groupName, UUID playerUuid) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_QUERY)) {
+            bind(stmt, type, groupName, playerUuid);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void appendPlayerChanges(Connection conn, Collection<UUID> playerUuids) throws SQLException {
+        if (playerUuids.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_QUERY)) {
+            for (UUID playerUuid : playerUuids) {
+                bind(stmt, ChangeType.PLAYER_GROUP_CHANGED, null, playerUuid);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Startet beim aktuellen Ende des Protokolls - ältere Änderungen stecken bereits im frisch geladenen Cache.
+     */
+    public synchronized void initialize(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(seq), 0) AS max_seq FROM group_change_log")) {
+            if (rs.next()) {
+                watermark = rs.getLong("max_seq");
+                seenAboveWatermark.clear();
+                skippedGaps.clear();
+            }
+        }
+    }
+
+    /**
+     * Liest die nächsten Änderungen anderer Server.
+     * <p>
+     * Sequenznummern können in anderer Reihenfolge committed werden, als sie vergeben wurden.
+     * Deshalb wird ab der letzten lückenlos verarbeiteten Nummer gelesen und bereits Gesehenes übersprungen.
+     */
+    public synchronized List<Change> poll(Connection conn, int limit) throws SQLException {
+        String query = """
+                SELECT seq, server_id, change_type, group_name, player_uuid
+                FROM group_change_log
+                WHERE seq > ?
+                ORDER BY seq
+                LIMIT ?
+                """;
+
+        List<Change> changes = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setLong(1, watermark);
+            stmt.setInt(2, limit + seenAboveWatermark.size());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long seq = rs.getLong("seq");
+                    if (seenAboveWatermark.add(seq)) {
+                        read(rs, seq, changes);
+                    }
+                }
+            }
+        }
+
+        advanceWatermark();
+        pollSkippedGaps(conn, changes);
+        return changes;
+    }
+
+    private void read(ResultSet rs, long seq, List<Change> changes) throws SQLException {
+        String origin = rs.getString("server_id");
+        if (serverId.equals(origin)) {
+            return;
+        }
+
+        changes.add(new Change(seq, origin,
+                ChangeType.valueOf(rs.getString("change_type")),
+                rs.getString("group_name"),
+                UuidCodec.fromBytes(rs.getBytes("player_uuid"))));
+    }
+
+    private void advanceWatermark() {
+        while (!seenAboveWatermark.isEmpty() && seenAboveWatermark.first() == watermark + 1) {
+            watermark = seenAboveWatermark.pollFirst();
+        }
+
+        if (seenAboveWatermark.isEmpty()) {
+            gapSince = 0;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (gapSince == 0) {
+            gapSince = now;
+        } else if (now - gapSince > gapTimeoutMillis) {
+            // Meist eine zurückgerollte Transaktion, ein sehr langsamer Schreiber wird über skippedGaps nachgeholt
+            skipGap(new Gap(watermark + 1, seenAboveWatermark.first() - 1, now));
+            watermark = seenAboveWatermark.first() - 1;
+            gapSince = 0;
+            advanceWatermark();
+        }
+    }
+
+    private void skipGap(Gap gap) {
+        if (skippedGaps.size() >= MAX_SKIPPED_GAPS) {
+            skippedGaps.removeFirst();
+        }
+        skippedGaps.add(gap);
+    }
+
+    /**
+     * Fragt übersprungene Lücken erneut ab und hängt dort inzwischen committete Änderungen an.
+     * Die Reihenfolge spielt keine Rolle, weil jede Änderung nur einen Cache-Eintrag neu laden lässt.
+     */
+    private void pollSkippedGaps(Connection conn, List<Change> changes) throws SQLException {
+        long now = System.currentTimeMillis();
+        skippedGaps.removeIf(gap -> now - gap.skippedAt() > retentionMillis);
+        if (skippedGaps.isEmpty()) {
+            return;
+        }
+
+        String ranges = String.join(" OR ", Collections.nCopies(skippedGaps.size(), "seq BETWEEN ? AND ?"));
+        String query = """
+                SELECT seq, server_id, change_type, group_name, player_uuid
+                FROM group_change_log
+                WHERE %s
+                ORDER BY seq
+                """.formatted(ranges);
+
+        List<Long> found = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (Gap gap : skippedGaps) {
+                stmt.setLong(index++, gap.from());
+                stmt.setLong(index++, gap.to());
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long seq = rs.getLong("seq");
+                    found.add(seq);
+                    read(rs, seq, changes);
+                }
+            }
+        }
+
+        for (long seq : found) {
+            removeFromGaps(seq);
+        }
+    }
+
+    private void removeFromGaps(long seq) {
+        for (int i = 0; i < skippedGaps.size(); i++) {
+            Gap gap = skippedGaps.get(i);
+            if (seq < gap.from() || seq > gap.to()) {
+                continue;
+            }
+
+            skippedGaps.remove(i);
+            if (seq < gap.to()) {
+                skippedGaps.add(i, new Gap(seq + 1, gap.to(), gap.skippedAt()));
+            }
+            if (seq > gap.from()) {
+                skippedGaps.add(i, new Gap(gap.from(), seq - 1, gap.skippedAt()));
+            }
+            return;
+        }
+    }
+
+    public int purgeOlderThan(Connection conn, long retentionHours) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(storage.purgeChangeLogQuery())) {
+            stmt.setLong(1, retentionHours);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private void bind(PreparedStatement stmt, ChangeType type, String groupName, UUID playerUuid) throws SQLException {
+        stmt.setString(1, serverId);
+        stmt.setString(2, type.name());
+        if (groupName != null) {
+            stmt.setString(3, groupName.toLowerCase());
+        } else {
+            stmt.setNull(3, Types.VARCHAR);
+        }
+        if (playerUuid != null) {
+            stmt.setBytes(4, UuidCodec.toBytes(playerUuid));
+        } else {
+            stmt.setNull(4, Types.BINARY);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package at.lukas.manager;
+
+import at.lukas.metrics.LatencyHistogram;
+import at.lukas.metrics.MetricsRegistry;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor für alle blockierenden JDBC-Aufrufe des DatabaseManagers.
+ * <p>
+ * Modi (database.executor.mode):
+ * - virtual: ein virtueller Thread pro Aufgabe, gleichzeitige Ausführung per Semaphore
+ * auf maximum-pool-size begrenzt - es wartet also nie ein Task, solange Hikari noch
+ * freie Verbindungen hat
+ * - platform: fester Pool normaler Threads (database.executor.threads, 0 = maximum-pool-size)
+ */
+public class DatabaseExecutor implements Executor {
+    public enum Mode {VIRTUAL, PLATFORM}
+
+    private final Mode mode;
+    private final int parallelism;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    // Aufgaben, die übergeben, aber noch nicht gestartet wurden
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LatencyHistogram waitLatency;
+
+    private DatabaseExecutor(Mode mode, int parallelism, MetricsRegistry metrics) {
+        this.mode = mode;
+        this.parallelism = parallelism;
+        this.waitLatency = metrics.histogram("executorWait");
+
+        if (mode == Mode.VIRTUAL) {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("groupsystem-db-", 0).factory());
+            this.permits = new Semaphore(parallelism, true);
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.delegate = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "groupsystem-db-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+        }
+    }
+
+    public static DatabaseExecutor fromConfig(FileConfiguration config, MetricsRegistry metrics) {
+        int poolSize = config.getInt("database.pool.maximum-pool-size", 10);
+        String modeName = config.getString("database.executor.mode", "virtual");
+
+        if ("platform".equalsIgnoreCase(modeName)) {
+            int threads = config.getInt("database.executor.threads", 0);
+            return new DatabaseExecutor(Mode.PLATFORM, threads > 0 ? threads : poolSize, metrics);
+        }
+
+        return new DatabaseExecutor(Mode.VIRTUAL, poolSize, metrics);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        // Vor der Übergabe zählen, sonst könnte started() schon vorher herunterzählen
+        queued.incrementAndGet();
+
+        try {
+            handOff(task, submitted);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void handOff(Runnable task, long submitted) {
+        if (permits == null) {
+            delegate.execute(() -> {
+                started(submitted);
+                task.run();
+            });
+            return;
+        }
+
+        delegate.execute(() -> {
+            permits.acquireUninterruptibly();
+            started(submitted);
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void started(long submittedNanos) {
+        queued.decrementAndGet();
+        waitLatency.record(System.nanoTime() - submittedNanos);
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public LatencyHistogram getWaitLatency() {
+        return waitLatency;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public String describe() {
+        if (permits != null) {
+            return String.format("virtual threads (max %d concurrent, %d running, %d waiting)",
+                    parallelism, parallelism - permits.availablePermits(), permits.getQueueLength());
+        }
+
+        if (delegate instanceof ThreadPoolExecutor pool) {
+            return String.format("platform threads (%d threads, %d running, %d queued)",
+                    parallelism, pool.getActiveCount(), pool.getQueue().size());
+        }
+
+        return "platform threads (" + parallelism + " threads)";
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -1,55 +1,222 @@
 package at.lukas.manager;
 
 import at.lukas.CustomGroupSystem;
-import at.lukas.misc.PlayerHelper;
+import at.lukas.metrics.CacheStats;
+import at.lukas.metrics.LatencyHistogram;
+import at.lukas.metrics.MetricsRegistry;
+import at.lukas.misc.DatasetFile;
+import at.lukas.misc.ExpiryIndex;
+import at.lukas.misc.UserImportReader;
+import at.lukas.misc.UuidCodec;
 import at.lukas.model.Group;
-import org.bukkit.entity.Player;
-import org.jetbrains.annotations.NotNull;
-
+import at.lukas.model.PlayerData;
+import at.lukas.model.RenderedPrefix;
+import at.lukas.storage.Storage;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class DatabaseManager {
     private final CustomGroupSystem plugin;
+    private final Storage storage;
     private final Map<String, Group> groupCache = new ConcurrentHashMap<>();
-    private final Map<UUID, String> playerGroupCache = new ConcurrentHashMap<>();
-    private final ExecutorService executorService = Executors.newFixedThreadPool(8);
+    private final Map<Integer, Group> groupsById = new ConcurrentHashMap<>();
+    private final PlayerGroupIndex playerGroupCache = new PlayerGroupIndex();
+    // Jeder Permission-Knoten liegt nur einmal im Speicher, Gruppen halten Bitsets über dessen IDs
+    private final PermissionDictionary permissionDictionary = new PermissionDictionary();
+    private final PermissionSet noPermissions = PermissionSet.empty(permissionDictionary);
+    // Eigene und geerbte Permissions pro Gruppen-ID
+    private final GroupHierarchy groupHierarchy = new GroupHierarchy(permissionDictionary);
+    private final DatabaseExecutor executorService;
+    private final PlayerGroupWriteQueue writeQueue;
+    private final ChangeLog changeLog;
+    private final DatasetTransfer datasetTransfer;
+    private final ExpiryIndex expiryIndex = new ExpiryIndex();
+    // Alle Zuweisungen aus player_groups, nur mit database.preload-memberships (sonst null)
+    private volatile MembershipTable memberships;
+    private final boolean preloadMemberships;
+    private final MembershipLoader membershipLoader;
+    private final Object membershipPreloadLock = new Object();
+    private final Object membershipLock = new Object();
+    // Nur während eines Preloads gesetzt, siehe preloadMemberships
+    private List<Consumer<MembershipTable>> membershipJournal;
+
+    private final MetricsRegistry metrics;
+    private final CacheStats playerGroupCacheStats;
+    private final CacheStats groupCacheStats;
+    private final CacheStats groupPermissionCacheStats;
+    private final LatencyHistogram loadAllGroupsLatency;
+    private final LatencyHistogram createGroupLatency;
+    private final LatencyHistogram deleteGroupLatency;
+    private final LatencyHistogram loadPlayerGroupLatency;
+    private final LatencyHistogram setUserGroupLatency;
+    private final LatencyHistogram getPlayerGroupExpiryLatency;
+    private final LatencyHistogram removeExpiredGroupsLatency;
+    private final LatencyHistogram findUpcomingExpiriesLatency;
+    private final LatencyHistogram addGroupPermissionLatency;
+    private final LatencyHistogram removeGroupPermissionLatency;
+    private final LatencyHistogram setGroupParentLatency;
+    private final LatencyHistogram pollRemoteChangesLatency;
+    private final LatencyHistogram purgeChangeLogLatency;
+    private final LatencyHistogram findExpiredPlayersLatency;
+    private final LatencyHistogram recordPlayerNameLatency;
+    private final LatencyHistogram findPlayerUuidLatency;
+    private final LatencyHistogram importUsersLatency;
+    private final LatencyHistogram exportDatasetLatency;
+    private final LatencyHistogram importDatasetLatency;
+    private final LatencyHistogram preloadMembershipsLatency;
+
+    private static final int EXPIRY_CHUNK_SIZE = 500;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    private static final int IMPORT_MAX_ERRORS = 10;
 
     public DatabaseManager(CustomGroupSystem plugin) {
         this.plugin = plugin;
+        this.storage = plugin.getStorage();
+        this.metrics = plugin.getMetrics();
+        this.executorService = DatabaseExecutor.fromConfig(plugin.getConfig(), metrics);
+
+        this.playerGroupCacheStats = metrics.cache("playerGroups");
+        this.groupCacheStats = metrics.cache("groups");
+        this.groupPermissionCacheStats = metrics.cache("groupPermissions");
+        this.loadAllGroupsLatency = metrics.histogram("loadAllGroups");
+        this.createGroupLatency = metrics.histogram("createGroup");
+        this.deleteGroupLatency = metrics.histogram("deleteGroup");
+        this.loadPlayerGroupLatency = metrics.histogram("loadPlayerGroup");
+        this.setUserGroupLatency = metrics.histogram("setUserGroup");
+        this.getPlayerGroupExpiryLatency = metrics.histogram("getPlayerGroupExpiry");
+        this.removeExpiredGroupsLatency = metrics.histogram("removeExpiredGroups");
+        this.findUpcomingExpiriesLatency = metrics.histogram("findUpcomingExpiries");
+        this.addGroupPermissionLatency = metrics.histogram("addGroupPermission");
+        this.removeGroupPermissionLatency = metrics.histogram("removeGroupPermission");
+        this.setGroupParentLatency = metrics.histogram("setGroupParent");
+        this.pollRemoteChangesLatency = metrics.histogram("pollRemoteChanges");
+        this.purgeChangeLogLatency = metrics.histogram("purgeChangeLog");
+        this.findExpiredPlayersLatency = metrics.histogram("findExpiredPlayers");
+        this.recordPlayerNameLatency = metrics.histogram("recordPlayerName");
+        this.findPlayerUuidLatency = metrics.histogram("findPlayerUuid");
+        this.importUsersLatency = metrics.histogram("importUsers");
+        this.exportDatasetLatency = metrics.histogram("exportDataset");
+        this.importDatasetLatency = metrics.histogram("importDataset");
+        this.preloadMembershipsLatency = metrics.histogram("preloadMemberships");
+        this.datasetTransfer = new DatasetTransfer(storage);
+
+        FileConfiguration config = plugin.getConfig();
+        this.changeLog = config.getBoolean("sync.enabled", false)
+                ? new ChangeLog(storage,
+                        TimeUnit.SECONDS.toMillis(config.getLong("sync.gap-timeout-seconds", 300)),
+                        TimeUnit.HOURS.toMillis(config.getLong("sync.retention-hours", 24)))
+                : null;
+        this.preloadMemberships = config.getBoolean("database.preload-memberships", false);
+        this.membershipLoader = new MembershipLoader(storage);
+
+        if (config.getBoolean("database.write-behind.enabled", false)) {
+            this.writeQueue = new PlayerGroupWriteQueue(plugin, changeLog,
+                    config.getLong("database.write-behind.flush-interval-ms", 200),
+                    config.getInt("database.write-behind.batch-size", 100));
+        } else {
+            this.writeQueue = null;
+        }
     }
 
     public CompletableFuture<Void> loadAllGroupsIntoCache() {
-        return CompletableFuture.runAsync(() -> {
+        return CompletableFuture.runAsync(loadAllGroupsLatency.time(() -> {
             String query = "SELECT id, name, prefix FROM group_data";
 
-            try (Connection conn = plugin.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(query);
-                 ResultSet rs = stmt.executeQuery()) {
+            try (Connection conn = plugin.getConnection()) {
+                if (changeLog != null) {
+                    // Vor dem Laden, damit keine Änderung zwischen Laden und Polling verloren geht
+                    changeLog.initialize(conn);
+                }
 
-                groupCache.clear();
+                try (PreparedStatement stmt = conn.prepareStatement(query);
+                     ResultSet rs = stmt.executeQuery()) {
 
-                while (rs.next()) {
-                    Group group = new Group(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getString("prefix")
-                    );
-                    groupCache.put(group.getName().toLowerCase(), group);
+                    groupCache.clear();
+                    groupsById.clear();
+
+                    while (rs.next()) {
+                        Group group = new Group(
+                                rs.getInt("id"),
+                                rs.getString("name"),
+                                rs.getString("prefix")
+                        );
+                        groupCache.put(group.getName().toLowerCase(), group);
+                        groupsById.put(group.getId(), group);
+                    }
                 }
 
                 plugin.getLogger().info("Loaded " + groupCache.size() + " groups into cache");
+
+                loadAllPermissionsIntoCache(conn);
+
+                if (preloadMemberships) {
+                    preloadMemberships(conn);
+                }
             } catch (SQLException e) {
                 plugin.getLogger().severe("Failed to load groups: " + e.getMessage());
             }
-        }, executorService);
+        }), executorService);
+    }
+
+    // Alle Permissions und Eltern aller Gruppen mit je einer Query laden
+    private void loadAllPermissionsIntoCache(Connection conn) throws SQLException {
+        String query = "SELECT group_id, permission FROM group_permissions ORDER BY id";
+
+        Map<Integer, Set<String>> loaded = new HashMap<>();
+        for (Group group : groupCache.values()) {
+            loaded.put(group.getId(), new LinkedHashSet<>());
+        }
+
+        int count = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                loaded.computeIfAbsent(rs.getInt("group_id"), id -> new LinkedHashSet<>())
+                        .add(rs.getString("permission"));
+                count++;
+            }
+        }
+
+        List<GroupHierarchy.Link> links = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT group_id, parent_id FROM group_parents");
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                links.add(new GroupHierarchy.Link(rs.getInt("group_id"), rs.getInt("parent_id")));
+            }
+        }
+
+        warnRejectedLinks(groupHierarchy.load(loaded, links));
+
+        plugin.getLogger().info("Loaded " + count + " group permissions and " + links.size() + " parent links into cache");
+    }
+
+    private void warnRejectedLinks(List<GroupHierarchy.Link> rejected) {
+        for (GroupHierarchy.Link link : rejected) {
+            Group group = getGroupById(link.groupId());
+            Group parent = getGroupById(link.parentId());
+            plugin.getLogger().warning("Ignoring inheritance " + (group != null ? group.getName() : link.groupId())
+                    + " -> " + (parent != null ? parent.getName() : link.parentId()) + ": it would create a cycle");
+        }
     }
 
     public boolean groupExists(String groupName) {
@@ -60,16 +227,92 @@ public class DatabaseManager {
         return new ArrayList<>(groupCache.keySet());
     }
 
+    private Group getGroupById(int groupId) {
+        return groupsById.get(groupId);
+    }
+
+    /**
+     * Lädt alle Zuweisungen aus player_groups in eine neue {@link MembershipTable} und ersetzt
+     * damit die bisherige.
+     * <p>
+     * Änderungen, die währenddessen geschrieben werden, landen zusätzlich in einem Journal und werden
+     * vor dem Austausch auf die neue Tabelle nachgespielt. Sonst gingen sie mit der alten Tabelle verloren.
+     */
+    private void preloadMemberships(Connection conn) throws SQLException {
+        synchronized (membershipPreloadLock) {
+            long start = System.nanoTime();
+
+            synchronized (membershipLock) {
+                membershipJournal = new ArrayList<>();
+            }
+
+            MembershipTable table;
+            try {
+                table = membershipLoader.load(conn);
+            } catch (SQLException | RuntimeException e) {
+                synchronized (membershipLock) {
+                    membershipJournal = null;
+                }
+                throw e;
+            }
+
+            int replayed;
+            synchronized (membershipLock) {
+                replayed = membershipJournal.size();
+                membershipJournal.forEach(update -> update.accept(table));
+                membershipJournal = null;
+                memberships = table;
+            }
+
+            preloadMembershipsLatency.record(System.nanoTime() - start);
+            plugin.getLogger().info("Preloaded " + table.size() + " group memberships ("
+                    + table.memoryBytes() / (1024 * 1024) + " MB, " + replayed + " concurrent change(s) replayed)");
+        }
+    }
+
+    // Alle Änderungen an der vorgeladenen Tabelle laufen hier durch, damit ein laufendes Preload sie mitbekommt
+    private void updateMemberships(Consumer<MembershipTable> update) {
+        synchronized (membershipLock) {
+            MembershipTable table = memberships;
+            if (table != null) {
+                update.accept(table);
+            }
+            if (membershipJournal != null) {
+                membershipJournal.add(update);
+            }
+        }
+    }
+
+    // Hält die vorgeladene Tabelle auf dem Stand der Datenbank
+    private void recordMembership(UUID playerUuid, String groupName, Long expiryMillis) {
+        if (!preloadMemberships) {
+            return;
+        }
+
+        Group group = groupCache.get(groupName.toLowerCase());
+        if (group != null) {
+            long expiry = expiryMillis != null ? expiryMillis : MembershipTable.PERMANENT;
+            updateMemberships(table -> table.put(playerUuid, group.getId(), expiry));
+        }
+    }
+
     public String getPrefix(String groupName) {
         Group group = groupCache.get(groupName.toLowerCase());
+        groupCacheStats.record(group != null);
         if (group == null) return "&7";
 
         String prefix = group.getPrefix();
         return prefix != null ? prefix : "&7";
     }
 
+    public RenderedPrefix getRenderedPrefix(String groupName) {
+        Group group = groupCache.get(groupName.toLowerCase());
+        groupCacheStats.record(group != null);
+        return group != null ? group.getRenderedPrefix() : RenderedPrefix.DEFAULT;
+    }
+
     public CompletableFuture<Void> createGroup(String name, String prefix) {
-        return CompletableFuture.runAsync(() -> {
+        return CompletableFuture.runAsync(createGroupLatency.time(() -> {
             String query = "INSERT INTO group_data (name, prefix) VALUES (?, ?)";
 
             try (Connection conn = plugin.getConnection();
@@ -85,13 +328,16 @@ public class DatabaseManager {
 
                     Group group = new Group(groupId, name.toLowerCase(), prefix);
                     groupCache.put(name.toLowerCase(), group);
+                    groupsById.put(groupId, group);
+                    groupHierarchy.put(groupId, List.of(), List.of());
+                    logChange(conn, ChangeLog.ChangeType.GROUP_CREATED, name, null);
 
                     plugin.getLogger().info("Created group: " + name);
                 }
             } catch (SQLException e) {
                 plugin.getLogger().severe("Failed to create group: " + e.getMessage());
             }
-        }, executorService);
+        }), executorService);
     }
 
     public CompletableFuture<Boolean> deleteGroup(String groupName) {
@@ -105,8 +351,8 @@ public class DatabaseManager {
             return future;
         }
 
-        return CompletableFuture.supplyAsync(() -> {
-            List<UUID> affectedPlayers = findPlayersInGroup(groupName);
+        return CompletableFuture.supplyAsync(deleteGroupLatency.time(() -> {
+            List<UUID> affectedPlayers = new ArrayList<>(playerGroupCache.members(groupName));
 
             String deleteQuery = "DELETE FROM group_data WHERE name = ?";
 
@@ -117,7 +363,16 @@ public class DatabaseManager {
                 int rowsAffected = stmt.executeUpdate();
 
                 if (rowsAffected > 0) {
-                    groupCache.remove(groupName.toLowerCase());
+                    Group removed = groupCache.remove(groupName.toLowerCase());
+                    if (removed != null) {
+                        forgetGroup(removed);
+                        Group defaultGroup = groupCache.get("default");
+                        if (writeQueue != null && defaultGroup != null) {
+                            // Sonst scheitern noch ausstehende Zuweisungen an die Gruppe am Foreign Key
+                            writeQueue.replaceGroup(removed.getId(), defaultGroup.getId());
+                        }
+                    }
+                    logChange(conn, ChangeLog.ChangeType.GROUP_DELETED, groupName, null);
                     reassignPlayersToDefault(affectedPlayers);
 
                     plugin.getLogger().info("Deleted group: " + groupName + " (" + affectedPlayers.size() + " players reassigned to default)");
@@ -129,38 +384,87 @@ public class DatabaseManager {
                 plugin.getLogger().severe("Failed to delete group: " + e.getMessage());
                 return false;
             }
-        }, executorService);
+        }), executorService);
     }
 
-    public CompletableFuture<Void> loadPlayerGroup(UUID playerUuid) {
-        return CompletableFuture.runAsync(() -> {
+    /**
+     * Lädt Gruppe, Ablaufzeitpunkt und Permissions eines Spielers in einem Schritt
+     * und legt die Gruppe im Cache ab. Spieler ohne Eintrag landen in "default".
+     */
+    public CompletableFuture<PlayerData> loadPlayerData(UUID playerUuid) {
+        return CompletableFuture.supplyAsync(loadPlayerGroupLatency.time(() -> {
             String query = """
-                    SELECT g.name
+                    SELECT g.name, %s as expiry_millis
                     FROM player_groups pg
                     JOIN group_data g ON pg.group_id = g.id
                     WHERE pg.uuid = ?
-                    """;
+                    """.formatted(storage.epochMillis("pg.expiry"));
 
             try (Connection conn = plugin.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(query)) {
 
-                stmt.setString(1, playerUuid.toString());
+                stmt.setBytes(1, UuidCodec.toBytes(playerUuid));
                 ResultSet rs = stmt.executeQuery();
 
+                PlayerGroupWriteQueue.PendingWrite pendingWrite = writeQueue != null ? writeQueue.getPending(playerUuid) : null;
+                Group pendingGroup = pendingWrite != null ? getGroupById(pendingWrite.groupId()) : null;
+                if (pendingGroup != null) {
+                    // Noch nicht geschriebene Zuweisung hat Vorrang vor dem Stand in der Datenbank
+                    cachePlayerGroup(playerUuid, pendingGroup.getName(), pendingWrite.expiryMillis());
+                    return new PlayerData(pendingGroup.getName(), pendingWrite.expiryMillis(), getCachedGroupPermissions(pendingGroup.getName()));
+                }
+
                 if (rs.next()) {
-                    String groupName = rs.getString("name");
-                    playerGroupCache.put(playerUuid, groupName.toLowerCase());
+                    String groupName = rs.getString("name").toLowerCase();
+                    long expiry = rs.getLong("expiry_millis");
+                    Long expiryMillis = rs.wasNull() ? null : expiry;
+
+                    playerGroupCache.put(playerUuid, groupName);
+                    recordMembership(playerUuid, groupName, expiryMillis);
+                    if (expiryMillis != null) {
+                        expiryIndex.schedule(playerUuid, expiryMillis);
+                    }
+
+                    return new PlayerData(groupName, expiryMillis, getCachedGroupPermissions(groupName));
+                }
+
+                if (writeQueue != null) {
+                    // Neue Spieler gesammelt mit den übrigen Zuweisungen schreiben
+                    setUserGroup(playerUuid, "default");
                 } else {
                     setUserGroupSync(playerUuid, "default");
                 }
+                return new PlayerData("default", null, getCachedGroupPermissions("default"));
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to load player group: " + e.getMessage());
+                throw new RuntimeException("Failed to load player data", e);
             }
-        }, executorService);
+        }), executorService);
+    }
+
+    /**
+     * Ersatzdaten, solange die echten nicht geladen werden konnten. Ein Eintrag, den das Laden
+     * inzwischen doch geschrieben hat, wird nicht überschrieben.
+     */
+    public PlayerData useDefaultPlayerData(UUID playerUuid) {
+        playerGroupCache.putIfAbsent(playerUuid, "default");
+        return new PlayerData("default", null, getCachedGroupPermissions("default"));
     }
 
+    /**
+     * Gruppe eines geladenen Spielers. Mit database.preload-memberships auch für alle anderen
+     * Spieler korrekt, sonst "default" für jeden, der nicht geladen ist.
+     */
     public String getPlayerGroup(UUID playerUuid) {
-        return playerGroupCache.getOrDefault(playerUuid, "default");
+        String groupName = playerGroupCache.get(playerUuid);
+
+        MembershipTable table = memberships;
+        if (groupName == null && table != null) {
+            Group group = getGroupById(table.groupId(playerUuid));
+            groupName = group != null ? group.getName() : null;
+        }
+
+        playerGroupCacheStats.record(groupName != null);
+        return groupName != null ? groupName : "default";
     }
 
     public String getPlayerPrefix(UUID playerUuid) {
@@ -168,8 +472,23 @@ public class DatabaseManager {
         return getPrefix(groupName);
     }
 
+    public RenderedPrefix getPlayerRenderedPrefix(UUID playerUuid) {
+        return getRenderedPrefix(getPlayerGroup(playerUuid));
+    }
+
+    /**
+     * Geladene Mitglieder einer Gruppe, ohne über alle Spieler zu iterieren.
+     */
+    public Set<UUID> getGroupMembers(String groupName) {
+        return playerGroupCache.members(groupName);
+    }
+
+    public int getGroupMemberCount(String groupName) {
+        return playerGroupCache.count(groupName);
+    }
+
     public boolean playerHasGroup(UUID playerUuid) {
-        return playerGroupCache.containsKey(playerUuid);
+        return playerGroupCache.contains(playerUuid);
     }
 
     public CompletableFuture<Void> setUserGroup(UUID playerUuid, String groupName) {
@@ -183,13 +502,30 @@ public class DatabaseManager {
             return future;
         }
 
-        return CompletableFuture.runAsync(() -> {
+        if (writeQueue != null) {
+            Group group = groupCache.get(groupName.toLowerCase());
+            cachePlayerGroup(playerUuid, group.getName(), expiryMillis);
+            return writeQueue.enqueue(playerUuid, group.getId(), expiryMillis);
+        }
+
+        return CompletableFuture.runAsync(setUserGroupLatency.time(() -> {
             try {
                 setUserGroupSync(playerUuid, groupName, expiryMillis);
             } catch (SQLException e) {
                 plugin.getLogger().severe("Failed to set user group: " + e.getMessage());
             }
-        }, executorService);
+        }), executorService);
+    }
+
+    private void cachePlayerGroup(UUID playerUuid, String groupName, Long expiryMillis) {
+        playerGroupCache.put(playerUuid, groupName);
+        recordMembership(playerUuid, groupName, expiryMillis);
+
+        if (expiryMillis != null) {
+            expiryIndex.schedule(playerUuid, expiryMillis);
+        } else {
+            expiryIndex.remove(playerUuid);
+        }
     }
 
     private void setUserGroupSync(UUID playerUuid, String groupName) throws SQLException {
@@ -198,20 +534,22 @@ public class DatabaseManager {
 
     private void setUserGroupSync(UUID playerUuid, String groupName, Long expiryMillis) throws SQLException {
         Group group = groupCache.get(groupName.toLowerCase());
-        String upsertQuery = buildUserGroupUpsertQuery(expiryMillis);
 
         try (Connection conn = plugin.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(upsertQuery)) {
+             PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerGroupQuery())) {
 
-            stmt.setString(1, playerUuid.toString());
+            stmt.setBytes(1, UuidCodec.toBytes(playerUuid));
             stmt.setInt(2, group.getId());
 
             if (expiryMillis != null) {
                 stmt.setLong(3, expiryMillis / 1000);
+            } else {
+                stmt.setNull(3, Types.BIGINT);
             }
 
             stmt.executeUpdate();
-            playerGroupCache.put(playerUuid, groupName.toLowerCase());
+            logChange(conn, ChangeLog.ChangeType.PLAYER_GROUP_CHANGED, null, playerUuid);
+            cachePlayerGroup(playerUuid, groupName, expiryMillis);
 
             plugin.getLogger().info("Set group for " + playerUuid + " to " + groupName +
                     (expiryMillis == null ? " (permanent)" : " (expires: " + new java.util.Date(expiryMillis) + ")"));
@@ -219,17 +557,28 @@ public class DatabaseManager {
     }
 
     public CompletableFuture<Long> getPlayerGroupExpiry(UUID playerUuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        PlayerGroupWriteQueue.PendingWrite pendingWrite = writeQueue != null ? writeQueue.getPending(playerUuid) : null;
+        if (pendingWrite != null) {
+            return CompletableFuture.completedFuture(pendingWrite.expiryMillis());
+        }
+
+        MembershipTable table = memberships;
+        if (table != null) {
+            long expiryMillis = table.expiry(playerUuid);
+            return CompletableFuture.completedFuture(expiryMillis != MembershipTable.PERMANENT ? expiryMillis : null);
+        }
+
+        return CompletableFuture.supplyAsync(getPlayerGroupExpiryLatency.time(() -> {
             String query = """
-                    SELECT UNIX_TIMESTAMP(expiry) * 1000 as expiry_millis
+                    SELECT %s as expiry_millis
                     FROM player_groups
                     WHERE uuid = ?
-                    """;
+                    """.formatted(storage.epochMillis("expiry"));
 
             try (Connection conn = plugin.getConnection();
                  PreparedStatement stmt = conn.prepareStatement(query)) {
 
-                stmt.setString(1, playerUuid.toString());
+                stmt.setBytes(1, UuidCodec.toBytes(playerUuid));
                 ResultSet rs = stmt.executeQuery();
 
                 if (rs.next()) {
@@ -242,24 +591,339 @@ public class DatabaseManager {
                 plugin.getLogger().severe("Failed to get expiry: " + e.getMessage());
                 return null;
             }
-        }, executorService);
+        }), executorService);
+    }
+
+    /**
+     * Merkt sich den aktuellen Namen eines Spielers für {@link #findPlayerUuid}.
+     */
+    public CompletableFuture<Void> recordPlayerName(UUID playerUuid, String name) {
+        return CompletableFuture.runAsync(recordPlayerNameLatency.time(() -> {
+            try (Connection conn = plugin.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerNameQuery())) {
+
+                stmt.setBytes(1, UuidCodec.toBytes(playerUuid));
+                stmt.setString(2, name);
+                stmt.setString(3, name.toLowerCase(Locale.ROOT));
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to record name of " + playerUuid + ": " + e.getMessage());
+            }
+        }), executorService);
+    }
+
+    /**
+     * UUID des Spielers, der zuletzt unter diesem Namen auf dem Server war, oder null.
+     * Namen können weitergegeben werden, deshalb gewinnt der jüngste Eintrag. Spieler, die seit
+     * Einführung von player_names nicht mehr online waren, findet nur der User-Cache des Servers.
+     */
+    public CompletableFuture<UUID> findPlayerUuid(String name) {
+        return CompletableFuture.supplyAsync(findPlayerUuidLatency.time(() -> {
+            String query = """
+                    SELECT uuid
+                    FROM player_names
+                    WHERE name_lower = ?
+                    ORDER BY last_seen DESC
+                    LIMIT 1
+                    """;
+
+            try (Connection conn = plugin.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(query)) {
+
+                stmt.setString(1, name.toLowerCase(Locale.ROOT));
+                ResultSet rs = stmt.executeQuery();
+
+                if (rs.next()) {
+                    return UuidCodec.fromBytes(rs.getBytes("uuid"));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to look up player " + name, e);
+            }
+
+            // Nur der lokale Cache, nie eine Anfrage bei Mojang
+            OfflinePlayer cached = Bukkit.getOfflinePlayerIfCached(name);
+            return cached != null && cached.hasPlayedBefore() ? cached.getUniqueId() : null;
+        }), executorService);
+    }
+
+    /**
+     * Fortschritt eines laufenden Imports, nach jedem geschriebenen Block.
+     */
+    public record ImportProgress(int imported, int skipped) {
+    }
+
+    /**
+     * @param loadedPlayers betroffene Spieler, deren Gruppe gerade im Cache liegt
+     * @param errors        die ersten {@value #IMPORT_MAX_ERRORS} ungültigen Zeilen
+     */
+    public record ImportResult(int imported, int skipped, Set<UUID> loadedPlayers, List<String> errors) {
+    }
+
+    /**
+     * Weist Spieler aus einer CSV/NDJSON-Datei (siehe {@link UserImportReader}) ihren Gruppen zu.
+     * <p>
+     * Die Datei wird gestreamt und in Blöcken von {@value #IMPORT_CHUNK_SIZE} Zeilen als Batch
+     * geschrieben, jeder Block in einer eigenen Transaktion. Bricht der Import ab, bleiben bereits
+     * geschriebene Blöcke erhalten. Zeilen mit unbekannter Gruppe, ungültiger UUID oder Dauer werden
+     * übersprungen. Der Cache wird nur für bereits geladene Spieler aktualisiert.
+     */
+    public CompletableFuture<ImportResult> importUsers(Path file, Consumer<ImportProgress> onProgress) {
+        return CompletableFuture.supplyAsync(importUsersLatency.time(() -> {
+            long now = System.currentTimeMillis();
+            List<UserImportReader.Row> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            Set<UUID> loadedPlayers = new HashSet<>();
+            List<String> errors = new ArrayList<>();
+            int imported = 0;
+            int skipped = 0;
+
+            try (UserImportReader reader = new UserImportReader(Files.newBufferedReader(file), UserImportReader.Format.of(file));
+                 Connection conn = plugin.getConnection()) {
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerGroupQuery())) {
+                    while (true) {
+                        UserImportReader.Row row;
+                        try {
+                            row = reader.next();
+                        } catch (IllegalArgumentException e) {
+                            skipped++;
+                            addImportError(errors, e.getMessage());
+                            continue;
+                        }
+
+                        if (row != null) {
+                            if (groupCache.containsKey(row.group())) {
+                                chunk.add(row);
+                            } else {
+                                skipped++;
+                                addImportError(errors, "Line " + row.line() + ": group '" + row.group() + "' doesn't exist");
+                            }
+                        }
+
+                        if (chunk.size() == IMPORT_CHUNK_SIZE || (row == null && !chunk.isEmpty())) {
+                            writeImportChunk(conn, stmt, chunk, now);
+                            imported += chunk.size();
+
+                            for (UserImportReader.Row written : chunk) {
+                                Group group = groupCache.get(written.group());
+                                if (group != null && playerGroupCache.contains(written.uuid())) {
+                                    cachePlayerGroup(written.uuid(), group.getName(), expiryOf(written, now));
+                                    loadedPlayers.add(written.uuid());
+                                    continue;
+                                }
+
+                                recordMembership(written.uuid(), written.group(), expiryOf(written, now));
+                                if (written.durationMillis() != null) {
+                                    // Läuft eventuell noch im aktuellen Fenster des ExpirySchedulers ab
+                                    expiryIndex.schedule(written.uuid(), now + written.durationMillis());
+                                }
+                            }
+                            chunk.clear();
+
+                            onProgress.accept(new ImportProgress(imported, skipped));
+                        }
+
+                        if (row == null) {
+                            break;
+                        }
+                    }
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + file.getFileName(), e);
+            } catch (SQLException e) {
+                throw new RuntimeException("Import failed after " + imported + " rows", e);
+            }
+
+            plugin.getLogger().info("Imported " + imported + " group assignment(s) from " + file.getFileName()
+                    + " (" + skipped + " skipped)");
+            return new ImportResult(imported, skipped, loadedPlayers, errors);
+        }), executorService);
+    }
+
+    private void writeImportChunk(Connection conn, PreparedStatement stmt, List<UserImportReader.Row> chunk, long now) throws SQLException {
+        List<UUID> players = new ArrayList<>(chunk.size());
+
+        for (UserImportReader.Row row : chunk) {
+            stmt.setBytes(1, UuidCodec.toBytes(row.uuid()));
+            stmt.setInt(2, groupCache.get(row.group()).getId());
+
+            Long expiryMillis = expiryOf(row, now);
+            if (expiryMillis != null) {
+                stmt.setLong(3, expiryMillis / 1000);
+            } else {
+                stmt.setNull(3, Types.BIGINT);
+            }
+            stmt.addBatch();
+            players.add(row.uuid());
+        }
+
+        stmt.executeBatch();
+        if (changeLog != null) {
+            changeLog.appendPlayerChanges(conn, players);
+        }
+        conn.commit();
+    }
+
+    private static Long expiryOf(UserImportReader.Row row, long now) {
+        return row.durationMillis() != null ? now + row.durationMillis() : null;
+    }
+
+    private void addImportError(List<String> errors, String error) {
+        if (errors.size() < IMPORT_MAX_ERRORS) {
+            errors.add(error);
+            plugin.getLogger().warning("Skipping import row - " + error);
+        }
+    }
+
+    /**
+     * Schreibt alle Gruppen, Permissions und Zuweisungen in eine {@link DatasetFile}.
+     * Erst in eine temporäre Datei, die am Ende umbenannt wird - ein abgebrochener Export
+     * überschreibt also keine ältere Datei.
+     */
+    public CompletableFuture<DatasetFile.Counts> exportDataset(Path file) {
+        return CompletableFuture.supplyAsync(exportDatasetLatency.time(() -> {
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (Connection conn = plugin.getConnection()) {
+                DatasetFile.Counts counts = datasetTransfer.export(conn, tempFile);
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                plugin.getLogger().info("Exported " + counts + " to " + file.getFileName());
+                return counts;
+            } catch (SQLException | IOException e) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+                throw new RuntimeException("Export failed: " + e.getMessage(), e);
+            }
+        }), executorService);
+    }
+
+    /**
+     * Spielt eine {@link DatasetFile} in einer Transaktion ein und lädt danach die betroffenen
+     * Gruppen und alle geladenen Spieler neu.
+     *
+     * @return Anzahl der Einträge; die Caches sind danach aktuell, online Spieler müssen noch neu angewendet werden
+     */
+    public CompletableFuture<DatasetFile.Counts> importDataset(Path file) {
+        return CompletableFuture.supplyAsync(importDatasetLatency.time(() -> {
+            List<String> importedGroups = new ArrayList<>();
+
+            try (Connection conn = plugin.getConnection()) {
+                DatasetFile.Counts counts = datasetTransfer.importFrom(conn, file, importedGroups);
+
+                for (String groupName : importedGroups) {
+                    reloadGroup(conn, groupName);
+                    logChange(conn, ChangeLog.ChangeType.GROUP_CREATED, groupName, null);
+                }
+                for (UUID playerUuid : playerGroupCache.players()) {
+                    reloadPlayerGroup(conn, playerUuid);
+                }
+                if (preloadMemberships) {
+                    preloadMemberships(conn);
+                }
+                // Ein Eintrag statt einem pro Spieler, die anderen Server laden ihre Spieler komplett neu
+                logChange(conn, ChangeLog.ChangeType.DATASET_IMPORTED, null, null);
+
+                plugin.getLogger().info("Imported " + counts + " from " + file.getFileName());
+                return counts;
+            } catch (SQLException | IOException e) {
+                throw new RuntimeException("Import failed: " + e.getMessage(), e);
+            }
+        }), executorService);
     }
 
-    public CompletableFuture<Integer> removeExpiredGroups() {
-        return CompletableFuture.supplyAsync(() -> {
-            List<UUID> expiredPlayerUuids = findExpiredPlayers();
+    /**
+     * Setzt alle abgelaufenen Gruppen in Blöcken von {@value #EXPIRY_CHUNK_SIZE} Spielern auf "default" zurück.
+     *
+     * @return genau die Spieler, deren Gruppe zurückgesetzt wurde
+     */
+    public CompletableFuture<Set<UUID>> removeExpiredGroups() {
+        return CompletableFuture.supplyAsync(removeExpiredGroupsLatency.time(() -> {
+            Set<UUID> resetPlayers = new HashSet<>();
+
+            Group defaultGroup = groupCache.get("default");
+            if (defaultGroup == null) {
+                plugin.getLogger().warning("Cannot reset expired groups: default group is missing");
+                return resetPlayers;
+            }
+
+            try (Connection conn = plugin.getConnection()) {
+                conn.setAutoCommit(false);
 
-            for (UUID playerUuid : expiredPlayerUuids) {
                 try {
-                    setUserGroupSync(playerUuid, "default", null);
-                    applyPrefixToOnlinePlayer(playerUuid);
+                    List<UUID> chunk;
+                    do {
+                        chunk = findExpiredPlayers(conn, EXPIRY_CHUNK_SIZE);
+                        if (chunk.isEmpty()) {
+                            break;
+                        }
+
+                        resetPlayersToGroup(conn, chunk, defaultGroup.getId());
+                        if (changeLog != null) {
+                            changeLog.appendPlayerChanges(conn, chunk);
+                        }
+                        conn.commit();
+                        resetPlayers.addAll(chunk);
+                    } while (chunk.size() == EXPIRY_CHUNK_SIZE);
                 } catch (SQLException e) {
-                    plugin.getLogger().warning("Failed to reset expired group: " + e.getMessage());
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to reset expired groups: " + e.getMessage());
+            }
+
+            for (UUID playerUuid : resetPlayers) {
+                playerGroupCache.replace(playerUuid, "default");
+                recordMembership(playerUuid, "default", null);
+                expiryIndex.remove(playerUuid);
             }
 
-            return expiredPlayerUuids.size();
-        }, executorService);
+            return resetPlayers;
+        }), executorService);
+    }
+
+    /**
+     * Lädt alle Ablaufzeitpunkte bis zum gegebenen Zeitpunkt (Look-Ahead-Fenster des ExpirySchedulers).
+     */
+    public CompletableFuture<Map<UUID, Long>> findUpcomingExpiries(long untilMillis) {
+        return CompletableFuture.supplyAsync(findUpcomingExpiriesLatency.time(() -> {
+            String query = """
+                    SELECT uuid, %s as expiry_millis
+                    FROM player_groups
+                    WHERE expiry IS NOT NULL AND expiry <= %s
+                    """.formatted(storage.epochMillis("expiry"), storage.fromEpochSeconds("?"));
+
+            Map<UUID, Long> upcoming = new HashMap<>();
+
+            try (Connection conn = plugin.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(query)) {
+
+                stmt.setLong(1, untilMillis / 1000);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        upcoming.put(UuidCodec.fromBytes(rs.getBytes("uuid")), rs.getLong("expiry_millis"));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to load upcoming expiries", e);
+            }
+
+            return upcoming;
+        }), executorService);
+    }
+
+    public ExpiryIndex getExpiryIndex() {
+        return expiryIndex;
     }
 
     public void unloadPlayer(UUID playerUuid) {
@@ -267,95 +931,117 @@ public class DatabaseManager {
     }
 
     public Set<UUID> getCachedPlayers() {
-        return new HashSet<>(playerGroupCache.keySet());
+        return playerGroupCache.players();
     }
 
     public void clearPlayerCache() {
         playerGroupCache.clear();
     }
 
-    public String getCacheStats() {
-        return String.format("Groups cached: %d, Players cached: %d",
-                groupCache.size(), playerGroupCache.size());
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
 
-    public void shutdown() {
-        executorService.shutdown();
+    public DatabaseExecutor getExecutor() {
+        return executorService;
     }
 
-    private @NotNull String buildUserGroupUpsertQuery(Long expiryMillis) {
-        if (expiryMillis == null) {
-            return """
-                    REPLACE INTO player_groups (uuid, group_id, expiry, assigned_at)
-                    VALUES (?, ?, NULL, NOW())
-                    """;
-        } else {
-            return """
-                    REPLACE INTO player_groups (uuid, group_id, expiry, assigned_at)
-                    VALUES (?, ?, FROM_UNIXTIME(?), NOW())
-                    """;
-        }
+    public int getPendingWrites() {
+        return writeQueue != null ? writeQueue.size() : 0;
     }
 
-    private List<UUID> findPlayersInGroup(String groupName) {
-        List<UUID> players = new ArrayList<>();
-        for (Map.Entry<UUID, String> entry : playerGroupCache.entrySet()) {
-            if (entry.getValue().equalsIgnoreCase(groupName)) {
-                players.add(entry.getKey());
+    public String getCacheStats() {
+        MembershipTable table = memberships;
+        return String.format("Groups cached: %d, Players cached: %d, Preloaded memberships: %s, Group permission sets cached: %d, Permission nodes: %d, Executor: %s, Pending writes: %d",
+                groupCache.size(), playerGroupCache.size(), table != null ? String.valueOf(table.size()) : "off",
+                groupHierarchy.size(), permissionDictionary.size(), executorService.describe(),
+                writeQueue != null ? writeQueue.size() : 0);
+    }
+
+    /**
+     * Führt alle bereits übergebenen Aufgaben noch aus, bevor der Pool geschlossen wird.
+     * Zuerst der Executor, weil dessen Aufgaben noch in die Write-Behind-Queue schreiben können.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Database tasks still running after " + SHUTDOWN_TIMEOUT_SECONDS + "s, closing the pool anyway ("
+                        + executorService.getQueueDepth() + " not started)");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writeQueue != null) {
+            writeQueue.shutdown();
         }
-        return players;
     }
 
     private void reassignPlayersToDefault(List<UUID> playerUuids) {
         for (UUID playerUuid : playerUuids) {
             try {
                 setUserGroupSync(playerUuid, "default");
-                applyPrefixToOnlinePlayer(playerUuid);
             } catch (SQLException e) {
                 plugin.getLogger().warning("Failed to reassign player " + playerUuid + " to default: " + e.getMessage());
             }
         }
     }
 
-    private void applyPrefixToOnlinePlayer(UUID playerUuid) {
-        Player player = plugin.getServer().getPlayer(playerUuid);
-        if (player != null && player.isOnline()) {
-            plugin.getServer().getScheduler().runTask(plugin, () ->
-                    PlayerHelper.applyPrefix(player, this));
-        }
-    }
-
-    private List<UUID> findExpiredPlayers() {
+    private List<UUID> findExpiredPlayers(Connection conn, int limit) throws SQLException {
         String query = """
-                SELECT pg.uuid, g.name
-                FROM player_groups pg
-                JOIN group_data g ON pg.group_id = g.id
-                WHERE pg.expiry IS NOT NULL AND pg.expiry <= NOW()
+                SELECT uuid
+                FROM player_groups
+                WHERE expiry IS NOT NULL AND expiry <= CURRENT_TIMESTAMP
+                LIMIT ?
+                FOR UPDATE
                 """;
 
+        // Die Zeilen bleiben bis zum Commit gesperrt, damit eine Verlängerung zwischen SELECT und UPDATE
+        // nicht übersprungen wird und der Block trotzdem als zurückgesetzt gemeldet wird
         List<UUID> expiredPlayerUuids = new ArrayList<>();
+        long start = System.nanoTime();
 
-        try (Connection conn = plugin.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, limit);
 
-            while (rs.next()) {
-                UUID playerUuid = UUID.fromString(rs.getString("uuid"));
-                String groupName = rs.getString("name");
-                expiredPlayerUuids.add(playerUuid);
-
-                plugin.getLogger().info("Group expired for " + playerUuid + " (was: " + groupName + ")");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    expiredPlayerUuids.add(UuidCodec.fromBytes(rs.getBytes("uuid")));
+                }
             }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to check expired groups: " + e.getMessage());
+        } finally {
+            findExpiredPlayersLatency.record(System.nanoTime() - start);
         }
 
         return expiredPlayerUuids;
     }
 
+    private void resetPlayersToGroup(Connection conn, List<UUID> playerUuids, int groupId) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(playerUuids.size(), "?"));
+        String query = """
+                UPDATE player_groups
+                SET group_id = ?, expiry = NULL, assigned_at = CURRENT_TIMESTAMP
+                WHERE expiry IS NOT NULL AND expiry <= CURRENT_TIMESTAMP AND uuid IN (%s)
+                """.formatted(placeholders);
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, groupId);
+
+            int index = 2;
+            for (UUID playerUuid : playerUuids) {
+                stmt.setBytes(index++, UuidCodec.toBytes(playerUuid));
+            }
+
+            int updated = stmt.executeUpdate();
+            if (updated != playerUuids.size()) {
+                throw new SQLException("Expected to reset " + playerUuids.size() + " locked rows, updated " + updated);
+            }
+        }
+    }
+
     public CompletableFuture<Void> addGroupPermission(String groupName, String permission) {
-        return CompletableFuture.runAsync(() -> {
+        return CompletableFuture.runAsync(addGroupPermissionLatency.time(() -> {
             try {
                 if (!groupExists(groupName)) {
                     throw new IllegalArgumentException("Group does not exist: " + groupName);
@@ -363,11 +1049,7 @@ public class DatabaseManager {
 
                 Group group = groupCache.get(groupName.toLowerCase());
 
-                String query = """
-                        INSERT INTO group_permissions (group_id, permission)
-                        VALUES (?, ?)
-                        ON DUPLICATE KEY UPDATE permission = VALUES(permission)
-                        """;
+                String query = storage.insertGroupPermissionQuery();
 
                 try (Connection conn = plugin.getConnection();
                      PreparedStatement stmt = conn.prepareStatement(query)) {
@@ -376,17 +1058,20 @@ public class DatabaseManager {
                     stmt.setString(2, permission);
                     stmt.executeUpdate();
 
+                    groupHierarchy.addPermission(group.getId(), permission);
+                    logChange(conn, ChangeLog.ChangeType.PERMISSIONS_CHANGED, groupName, null);
+
                     plugin.getLogger().info("Added permission '" + permission + "' to group '" + groupName + "'");
                 }
 
             } catch (SQLException e) {
                 throw new RuntimeException("Failed to add permission", e);
             }
-        }, executorService);
+        }), executorService);
     }
 
     public CompletableFuture<Boolean> removeGroupPermission(String groupName, String permission) {
-        return CompletableFuture.supplyAsync(() -> {
+        return CompletableFuture.supplyAsync(removeGroupPermissionLatency.time(() -> {
             try {
                 if (!groupExists(groupName)) {
                     return false;
@@ -407,6 +1092,9 @@ public class DatabaseManager {
                     int affected = stmt.executeUpdate();
 
                     if (affected > 0) {
+                        groupHierarchy.removePermission(group.getId(), permission);
+                        logChange(conn, ChangeLog.ChangeType.PERMISSIONS_CHANGED, groupName, null);
+
                         plugin.getLogger().info("Removed permission '" + permission + "' from group '" + groupName + "'");
                     }
 
@@ -416,120 +1104,353 @@ public class DatabaseManager {
             } catch (SQLException e) {
                 throw new RuntimeException("Failed to remove permission", e);
             }
-        }, executorService);
+        }), executorService);
     }
 
-    public CompletableFuture<List<String>> getGroupPermissions(String groupName) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (!groupExists(groupName)) {
-                    return new ArrayList<>();
-                }
+    public CompletableFuture<Set<String>> getGroupPermissions(String groupName) {
+        return CompletableFuture.completedFuture(getCachedGroupPermissions(groupName));
+    }
 
-                Group group = groupCache.get(groupName.toLowerCase());
+    public CompletableFuture<Set<String>> getPlayerPermissions(UUID uuid) {
+        String groupName = getPlayerGroup(uuid);
+        if (groupName == null) {
+            return CompletableFuture.completedFuture(noPermissions);
+        }
 
-                String query = """
-                        SELECT permission
-                        FROM group_permissions
-                        WHERE group_id = ?
-                        """;
+        return CompletableFuture.completedFuture(getCachedGroupPermissions(groupName));
+    }
 
-                List<String> permissions = new ArrayList<>();
+    public CompletableFuture<Boolean> groupHasPermission(String groupName, String permission) {
+        return CompletableFuture.completedFuture(getCachedGroupPermissions(groupName).contains(permission));
+    }
 
-                try (Connection conn = plugin.getConnection();
-                     PreparedStatement stmt = conn.prepareStatement(query)) {
+    /**
+     * Lässt eine Gruppe von einer anderen erben (add = true) oder entfernt die Vererbung wieder.
+     * Vererbungen, die einen Zyklus schließen würden, werden mit einer IllegalArgumentException abgelehnt.
+     *
+     * @return false, wenn sich nichts geändert hat
+     */
+    public CompletableFuture<Boolean> setGroupParent(String groupName, String parentName, boolean add) {
+        Group group = groupCache.get(groupName.toLowerCase());
+        Group parent = groupCache.get(parentName.toLowerCase());
+
+        if (group == null || parent == null) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException("Group does not exist: " + (group == null ? groupName : parentName)));
+            return future;
+        }
+
+        if (add && groupHierarchy.wouldCreateCycle(group.getId(), parent.getId())) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException(
+                    "'" + parent.getName() + "' already inherits from '" + group.getName() + "'"));
+            return future;
+        }
+
+        return CompletableFuture.supplyAsync(setGroupParentLatency.time(() -> {
+            String query = add
+                    ? storage.insertGroupParentQuery()
+                    : "DELETE FROM group_parents WHERE group_id = ? AND parent_id = ?";
 
+            try (Connection conn = plugin.getConnection()) {
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
                     stmt.setInt(1, group.getId());
-                    ResultSet rs = stmt.executeQuery();
+                    stmt.setInt(2, parent.getId());
+                    stmt.executeUpdate();
 
-                    while (rs.next()) {
-                        permissions.add(rs.getString("permission"));
+                    // Prüft den Zyklus nochmal unter Lock, falls parallel eine andere Vererbung dazukam
+                    Set<Integer> recomputed = add
+                            ? groupHierarchy.addParent(group.getId(), parent.getId())
+                            : groupHierarchy.removeParent(group.getId(), parent.getId());
+
+                    if (recomputed.isEmpty()) {
+                        conn.rollback();
+                        return false;
                     }
-                }
 
-                return permissions;
+                    // Die anderen Server laden die Gruppe neu und berechnen die Nachfahren selbst
+                    logChange(conn, ChangeLog.ChangeType.PERMISSIONS_CHANGED, group.getName(), null);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
 
+                plugin.getLogger().info((add ? "Group '" + group.getName() + "' now inherits from '" : "Group '" + group.getName() + "' no longer inherits from '")
+                        + parent.getName() + "'");
+                return true;
             } catch (SQLException e) {
-                throw new RuntimeException("Failed to get group permissions", e);
+                throw new RuntimeException("Failed to update group inheritance", e);
             }
-        }, executorService);
+        }), executorService);
     }
 
-    public CompletableFuture<List<String>> getPlayerPermissions(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String groupName = getPlayerGroup(uuid);
+    public List<String> getParentGroups(String groupName) {
+        Group group = groupCache.get(groupName.toLowerCase());
+        if (group == null) {
+            return Collections.emptyList();
+        }
 
-                if (groupName == null) {
-                    return new ArrayList<>();
-                }
+        List<String> names = new ArrayList<>();
+        for (int parentId : groupHierarchy.getParents(group.getId())) {
+            Group parent = getGroupById(parentId);
+            if (parent != null) {
+                names.add(parent.getName());
+            }
+        }
+        return names;
+    }
 
-                Group group = groupCache.get(groupName.toLowerCase());
-                if (group == null) {
-                    return new ArrayList<>();
-                }
+    /**
+     * Alle Gruppen, die direkt oder indirekt von dieser Gruppe erben.
+     */
+    public Set<String> getDescendantGroups(String groupName) {
+        Group group = groupCache.get(groupName.toLowerCase());
+        if (group == null) {
+            return Collections.emptySet();
+        }
 
-                String query = """
-                        SELECT permission
-                        FROM group_permissions
-                        WHERE group_id = ?
-                        """;
+        Set<Integer> descendantIds = groupHierarchy.getDescendants(group.getId());
+        if (descendantIds.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-                List<String> permissions = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Group candidate : groupCache.values()) {
+            if (descendantIds.contains(candidate.getId())) {
+                names.add(candidate.getName());
+            }
+        }
+        return names;
+    }
 
-                try (Connection conn = plugin.getConnection();
-                     PreparedStatement stmt = conn.prepareStatement(query)) {
+    /**
+     * Liefert das unveränderliche Permission-Set einer Gruppe direkt aus dem Cache.
+     */
+    public PermissionSet getCachedPlayerPermissions(UUID uuid) {
+        return getCachedGroupPermissions(getPlayerGroup(uuid));
+    }
 
-                    stmt.setInt(1, group.getId());
-                    ResultSet rs = stmt.executeQuery();
+    public PermissionSet getCachedGroupPermissions(String groupName) {
+        Group group = groupCache.get(groupName.toLowerCase());
+        if (group == null) {
+            return noPermissions;
+        }
 
-                    while (rs.next()) {
-                        permissions.add(rs.getString("permission"));
+        PermissionSet permissions = groupHierarchy.getEffective(group.getId());
+        groupPermissionCacheStats.record(permissions != null);
+        return permissions != null ? permissions : noPermissions;
+    }
+
+    public PermissionDictionary getPermissionDictionary() {
+        return permissionDictionary;
+    }
+
+    private void logChange(Connection conn, ChangeLog.ChangeType type, String groupName, UUID playerUuid) throws SQLException {
+        if (changeLog != null) {
+            changeLog.append(conn, type, groupName, playerUuid);
+        }
+    }
+
+    public boolean isSyncEnabled() {
+        return changeLog != null;
+    }
+
+    /**
+     * Übernimmt Änderungen anderer Server aus dem Änderungsprotokoll in die Caches.
+     *
+     * @return die betroffenen Gruppen und Spieler, deren Anzeige/Permissions neu berechnet werden müssen
+     */
+    public CompletableFuture<ChangeLog.Invalidation> pollRemoteChanges(int limit) {
+        return CompletableFuture.supplyAsync(pollRemoteChangesLatency.time(() -> {
+            Set<String> changedGroups = new HashSet<>();
+            Set<UUID> changedPlayers = new HashSet<>();
+
+            try (Connection conn = plugin.getConnection()) {
+                List<ChangeLog.Change> changes = changeLog.poll(conn, limit);
+                if (changes.isEmpty()) {
+                    return new ChangeLog.Invalidation(changedGroups, changedPlayers);
+                }
+
+                Set<String> groupsToReload = new HashSet<>();
+                Set<UUID> playersToReload = new HashSet<>();
+                Set<UUID> membershipsToReload = new HashSet<>();
+                boolean reloadAllMemberships = false;
+
+                for (ChangeLog.Change change : changes) {
+                    switch (change.type()) {
+                        case GROUP_CREATED, GROUP_DELETED, PERMISSIONS_CHANGED -> groupsToReload.add(change.groupName());
+                        case DATASET_IMPORTED -> {
+                            playersToReload.addAll(playerGroupCache.players());
+                            reloadAllMemberships = preloadMemberships;
+                        }
+                        case PLAYER_GROUP_CHANGED -> {
+                            // Geladene Spieler komplett, alle anderen nur in der vorgeladenen Tabelle
+                            if (playerGroupCache.contains(change.playerUuid())) {
+                                playersToReload.add(change.playerUuid());
+                            } else if (memberships != null) {
+                                membershipsToReload.add(change.playerUuid());
+                            }
+                        }
                     }
                 }
 
-                return permissions;
+                if (reloadAllMemberships) {
+                    preloadMemberships(conn);
+                } else {
+                    for (UUID playerUuid : membershipsToReload) {
+                        reloadMembership(conn, playerUuid);
+                        // Für Schilder und andere Anzeigen offline Spieler
+                        changedPlayers.add(playerUuid);
+                    }
+                }
 
+                for (String groupName : groupsToReload) {
+                    // Vorher, damit auch die Erben einer gelöschten Gruppe neu angewendet werden
+                    changedGroups.addAll(getDescendantGroups(groupName));
+                    if (!reloadGroup(conn, groupName)) {
+                        changedPlayers.addAll(evictGroup(groupName));
+                    }
+                    changedGroups.add(groupName);
+                }
+
+                for (UUID playerUuid : playersToReload) {
+                    reloadPlayerGroup(conn, playerUuid);
+                    changedPlayers.add(playerUuid);
+                }
+
+                plugin.getLogger().info("Applied " + changes.size() + " change(s) from other servers");
             } catch (SQLException e) {
-                throw new RuntimeException("Failed to get player permissions", e);
+                throw new RuntimeException("Failed to poll change log", e);
             }
-        }, executorService);
+
+            return new ChangeLog.Invalidation(changedGroups, changedPlayers);
+        }), executorService);
     }
 
-    public CompletableFuture<Boolean> groupHasPermission(String groupName, String permission) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (!groupExists(groupName)) {
+    public CompletableFuture<Integer> purgeChangeLog(long retentionHours) {
+        return CompletableFuture.supplyAsync(purgeChangeLogLatency.time(() -> {
+            try (Connection conn = plugin.getConnection()) {
+                return changeLog.purgeOlderThan(conn, retentionHours);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to purge change log", e);
+            }
+        }), executorService);
+    }
+
+    // Gruppe samt Permissions neu laden, false wenn es sie nicht mehr gibt
+    private boolean reloadGroup(Connection conn, String groupName) throws SQLException {
+        Group group;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id, name, prefix FROM group_data WHERE name = ?")) {
+            stmt.setString(1, groupName.toLowerCase());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
                     return false;
                 }
+                group = new Group(rs.getInt("id"), rs.getString("name"), rs.getString("prefix"));
+            }
+        }
 
-                Group group = groupCache.get(groupName.toLowerCase());
+        Set<String> permissions = new LinkedHashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT permission FROM group_permissions WHERE group_id = ? ORDER BY id")) {
+            stmt.setInt(1, group.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    permissions.add(rs.getString("permission"));
+                }
+            }
+        }
 
-                String query = """
-                        SELECT COUNT(*) as count
-                        FROM group_permissions
-                        WHERE group_id = ? AND permission = ?
-                        """;
+        List<Integer> parentIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT parent_id FROM group_parents WHERE group_id = ?")) {
+            stmt.setInt(1, group.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    parentIds.add(rs.getInt("parent_id"));
+                }
+            }
+        }
 
-                try (Connection conn = plugin.getConnection();
-                     PreparedStatement stmt = conn.prepareStatement(query)) {
+        Group previous = groupCache.put(group.getName().toLowerCase(), group);
+        if (previous != null && previous.getId() != group.getId()) {
+            forgetGroup(previous);
+        }
+        groupsById.put(group.getId(), group);
+        warnRejectedLinks(groupHierarchy.put(group.getId(), permissions, parentIds));
+        return true;
+    }
 
-                    stmt.setInt(1, group.getId());
-                    stmt.setString(2, permission);
-                    ResultSet rs = stmt.executeQuery();
+    // Alles außer dem Namens-Cache; Mitglieder landen wie in der Datenbank in "default"
+    private void forgetGroup(Group group) {
+        groupsById.remove(group.getId());
+        groupHierarchy.remove(group.getId());
 
-                    if (rs.next()) {
-                        return rs.getInt("count") > 0;
-                    }
+        Group defaultGroup = groupCache.get("default");
+        if (preloadMemberships && defaultGroup != null) {
+            updateMemberships(table -> table.replaceGroup(group.getId(), defaultGroup.getId()));
+        }
+    }
+
+    // Gruppe aus den Caches entfernen, geladene Mitglieder landen (wie in der Datenbank) in "default"
+    private List<UUID> evictGroup(String groupName) {
+        Group removed = groupCache.remove(groupName.toLowerCase());
+        if (removed != null) {
+            forgetGroup(removed);
+        }
+
+        List<UUID> members = new ArrayList<>(playerGroupCache.members(groupName));
+        for (UUID playerUuid : members) {
+            playerGroupCache.put(playerUuid, "default");
+            expiryIndex.remove(playerUuid);
+        }
+        return members;
+    }
+
+    private void reloadMembership(Connection conn, UUID playerUuid) throws SQLException {
+        String query = "SELECT group_id, %s AS expiry_millis FROM player_groups WHERE uuid = ?"
+                .formatted(storage.epochMillis("expiry"));
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setBytes(1, UuidCodec.toBytes(playerUuid));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long expiry = rs.getLong("expiry_millis");
+                    long expiryMillis = rs.wasNull() ? MembershipTable.PERMANENT : expiry;
+                    int groupId = rs.getInt("group_id");
+                    updateMemberships(table -> table.put(playerUuid, groupId, expiryMillis));
+                } else {
+                    updateMemberships(table -> table.remove(playerUuid));
                 }
+            }
+        }
+    }
 
-                return false;
+    private void reloadPlayerGroup(Connection conn, UUID playerUuid) throws SQLException {
+        String query = """
+                SELECT g.name, %s as expiry_millis
+                FROM player_groups pg
+                JOIN group_data g ON pg.group_id = g.id
+                WHERE pg.uuid = ?
+                """.formatted(storage.epochMillis("pg.expiry"));
 
-            } catch (SQLException e) {
-                throw new RuntimeException("Failed to check permission", e);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setBytes(1, UuidCodec.toBytes(playerUuid));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long expiry = rs.getLong("expiry_millis");
+                    Long expiryMillis = rs.wasNull() ? null : expiry;
+                    cachePlayerGroup(playerUuid, rs.getString("name"), expiryMillis);
+                } else {
+                    cachePlayerGroup(playerUuid, "default", null);
+                }
             }
-        }, executorService);
+        }
     }
+
     public CustomGroupSystem getPlugin() {
         return plugin;
     }
@@ -0,0 +1,214 @@
+package at.lukas.manager;
+
+import at.lukas.misc.DatasetFile;
+import at.lukas.misc.UuidCodec;
+import at.lukas.storage.Storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kopiert group_data, group_parents, group_permissions und player_groups in eine {@link DatasetFile} und zurück.
+ * <p>
+ * Beim Export werden die Tabellen nacheinander mit einem Cursor gelesen
+ * ({@link Storage#streamingFetchSize()}), beim Import in Batches von {@value #BATCH_SIZE}
+ * Zeilen geschrieben. Im Speicher liegt nur die Zuordnung alter zu neuer Gruppen-IDs.
+ * Der Import läuft in einer einzigen Transaktion: entweder alles oder nichts.
+ */
+public class DatasetTransfer {
+    private static final int BATCH_SIZE = 1000;
+
+    private final Storage storage;
+
+    public DatasetTransfer(Storage storage) {
+        this.storage = storage;
+    }
+
+    public DatasetFile.Counts export(Connection conn, Path file) throws SQLException, IOException {
+        boolean autoCommit = conn.getAutoCommit();
+        // Eine Transaktion, damit alle Tabellen denselben Stand zeigen
+        conn.setAutoCommit(false);
+
+        try (DatasetFile.Writer writer = new DatasetFile.Writer(file)) {
+            try (Statement stmt = streamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT id, name, prefix FROM group_data ORDER BY id")) {
+                while (rs.next()) {
+                    writer.writeGroup(rs.getInt("id"), rs.getString("name"), rs.getString("prefix"));
+                }
+            }
+
+            try (Statement stmt = streamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT group_id, parent_id FROM group_parents")) {
+                while (rs.next()) {
+                    writer.writeParent(rs.getInt("group_id"), rs.getInt("parent_id"));
+                }
+            }
+
+            try (Statement stmt = streamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery("SELECT group_id, permission FROM group_permissions ORDER BY id")) {
+                while (rs.next()) {
+                    writer.writePermission(rs.getInt("group_id"), rs.getString("permission"));
+                }
+            }
+
+            String players = "SELECT uuid, group_id, %s AS expiry_millis FROM player_groups"
+                    .formatted(storage.epochMillis("expiry"));
+            try (Statement stmt = streamingStatement(conn);
+                 ResultSet rs = stmt.executeQuery(players)) {
+                while (rs.next()) {
+                    long expiryMillis = rs.getLong("expiry_millis");
+                    long expirySeconds = rs.wasNull() ? DatasetFile.PERMANENT : expiryMillis / 1000;
+                    writer.writePlayer(UuidCodec.fromBytes(rs.getBytes("uuid")), rs.getInt("group_id"), expirySeconds);
+                }
+            }
+
+            DatasetFile.Counts counts = writer.finish();
+            conn.commit();
+            return counts;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Spielt eine Datei ein. Gruppen werden über den Namen zugeordnet (Prefix wird übernommen),
+     * Vererbungen und Permissions ergänzt, Spielerzuweisungen überschrieben. Nichts wird gelöscht.
+     *
+     * @param importedGroups bekommt die Namen aller Gruppen aus der Datei
+     */
+    public DatasetFile.Counts importFrom(Connection conn, Path file, List<String> importedGroups) throws SQLException, IOException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        Map<Integer, Integer> groupIds = new HashMap<>();
+
+        try (DatasetFile.Reader reader = new DatasetFile.Reader(file);
+             PreparedStatement parentStmt = conn.prepareStatement(storage.insertGroupParentQuery());
+             PreparedStatement permissionStmt = conn.prepareStatement(storage.insertGroupPermissionQuery());
+             PreparedStatement playerStmt = conn.prepareStatement(storage.upsertPlayerGroupQuery())) {
+
+            int pendingParents = 0;
+            int pendingPermissions = 0;
+            int pendingPlayers = 0;
+
+            DatasetFile.Entry entry;
+            while ((entry = reader.next()) != null) {
+                switch (entry) {
+                    case DatasetFile.GroupEntry group -> {
+                        groupIds.put(group.id(), upsertGroup(conn, group.name(), group.prefix()));
+                        importedGroups.add(group.name().toLowerCase());
+                    }
+                    case DatasetFile.ParentEntry parent -> {
+                        parentStmt.setInt(1, mapGroupId(groupIds, parent.groupId()));
+                        parentStmt.setInt(2, mapGroupId(groupIds, parent.parentId()));
+                        parentStmt.addBatch();
+
+                        if (++pendingParents == BATCH_SIZE) {
+                            parentStmt.executeBatch();
+                            pendingParents = 0;
+                        }
+                    }
+                    case DatasetFile.PermissionEntry permission -> {
+                        permissionStmt.setInt(1, mapGroupId(groupIds, permission.groupId()));
+                        permissionStmt.setString(2, permission.permission());
+                        permissionStmt.addBatch();
+
+                        if (++pendingPermissions == BATCH_SIZE) {
+                            permissionStmt.executeBatch();
+                            pendingPermissions = 0;
+                        }
+                    }
+                    case DatasetFile.PlayerEntry player -> {
+                        playerStmt.setBytes(1, UuidCodec.toBytes(player.uuid()));
+                        playerStmt.setInt(2, mapGroupId(groupIds, player.groupId()));
+                        if (player.expirySeconds() != DatasetFile.PERMANENT) {
+                            playerStmt.setLong(3, player.expirySeconds());
+                        } else {
+                            playerStmt.setNull(3, Types.BIGINT);
+                        }
+                        playerStmt.addBatch();
+
+                        if (++pendingPlayers == BATCH_SIZE) {
+                            playerStmt.executeBatch();
+                            pendingPlayers = 0;
+                        }
+                    }
+                }
+            }
+
+            if (pendingParents > 0) {
+                parentStmt.executeBatch();
+            }
+            if (pendingPermissions > 0) {
+                permissionStmt.executeBatch();
+            }
+            if (pendingPlayers > 0) {
+                playerStmt.executeBatch();
+            }
+
+            conn.commit();
+            return reader.getCounts();
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Statement streamingStatement(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(storage.streamingFetchSize());
+        return stmt;
+    }
+
+    private static int upsertGroup(Connection conn, String name, String prefix) throws SQLException {
+        String groupName = name.toLowerCase();
+
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE group_data SET prefix = ? WHERE name = ?")) {
+            stmt.setString(1, prefix);
+            stmt.setString(2, groupName);
+            stmt.executeUpdate();
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM group_data WHERE name = ?")) {
+            stmt.setString(1, groupName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("id");
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO group_data (name, prefix) VALUES (?, ?)",
+                PreparedStatement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, groupName);
+            stmt.setString(2, prefix);
+            stmt.executeUpdate();
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No id generated for group " + groupName);
+                }
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static int mapGroupId(Map<Integer, Integer> groupIds, int exportedId) throws IOException {
+        Integer id = groupIds.get(exportedId);
+        if (id == null) {
+            throw new IOException("Dataset file is corrupt: unknown group id " + exportedId);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,293 @@
+package at.lukas.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Eigene Permissions und Eltern jeder Gruppe plus das daraus berechnete effektive Set.
+ * <p>
+ * Das effektive Set (eigene Permissions plus die aller Vorfahren) wird bei jeder Änderung
+ * einmal als {@link PermissionSet} vereinigt und abgelegt. Eine geerbte Gruppe anzuwenden kostet
+ * damit genau so viel wie eine flache. Ändert sich eine Gruppe, werden nur sie und ihre
+ * Nachfahren neu berechnet, alle anderen Sets bleiben dieselben Objekte.
+ * <p>
+ * Zyklen werden beim Hinzufügen eines Elternteils abgelehnt. Kanten auf (noch) unbekannte
+ * Gruppen sind erlaubt und tragen nichts bei, bis die Gruppe geladen wird.
+ * Änderungen sind synchronisiert, {@link #getEffective} liest ohne Lock.
+ */
+public final class GroupHierarchy {
+
+    public record Link(int groupId, int parentId) {
+    }
+
+    private final PermissionDictionary dictionary;
+    private final PermissionSet empty;
+    private final Map<Integer, PermissionSet> own = new HashMap<>();
+    private final Map<Integer, Set<Integer>> parents = new HashMap<>();
+    private final Map<Integer, Set<Integer>> children = new HashMap<>();
+    private final Map<Integer, PermissionSet> effective = new ConcurrentHashMap<>();
+
+    public GroupHierarchy(PermissionDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.empty = PermissionSet.empty(dictionary);
+    }
+
+    public PermissionSet getEffective(int groupId) {
+        return effective.get(groupId);
+    }
+
+    public synchronized PermissionSet getOwn(int groupId) {
+        return own.getOrDefault(groupId, empty);
+    }
+
+    public synchronized List<Integer> getParents(int groupId) {
+        return new ArrayList<>(parents.getOrDefault(groupId, Collections.emptySet()));
+    }
+
+    /**
+     * Alle direkten und indirekten Kinder, ohne die Gruppe selbst.
+     */
+    public synchronized Set<Integer> getDescendants(int groupId) {
+        Set<Integer> descendants = withDescendants(groupId);
+        descendants.remove(groupId);
+        return descendants;
+    }
+
+    public int size() {
+        return effective.size();
+    }
+
+    /**
+     * Ersetzt den kompletten Inhalt. Kanten, die einen Zyklus schließen würden, werden verworfen.
+     *
+     * @return die verworfenen Kanten
+     */
+    public synchronized List<Link> load(Map<Integer, ? extends Collection<String>> permissions, Collection<Link> links) {
+        own.clear();
+        parents.clear();
+        children.clear();
+        effective.clear();
+
+        for (Map.Entry<Integer, ? extends Collection<String>> entry : permissions.entrySet()) {
+            own.put(entry.getKey(), PermissionSet.of(dictionary, entry.getValue()));
+        }
+
+        List<Link> rejected = new ArrayList<>();
+        for (Link link : links) {
+            if (!link(link.groupId(), link.parentId())) {
+                rejected.add(link);
+            }
+        }
+
+        resolve(new LinkedHashSet<>(own.keySet()));
+        return rejected;
+    }
+
+    /**
+     * Setzt eigene Permissions und Eltern einer Gruppe neu, z.B. nach dem Neuladen aus der Datenbank.
+     *
+     * @return die verworfenen Kanten (Zyklus)
+     */
+    public synchronized List<Link> put(int groupId, Collection<String> permissions, Collection<Integer> parentIds) {
+        own.put(groupId, PermissionSet.of(dictionary, permissions));
+        unlinkParents(groupId);
+
+        List<Link> rejected = new ArrayList<>();
+        for (int parentId : parentIds) {
+            if (!link(groupId, parentId)) {
+                rejected.add(new Link(groupId, parentId));
+            }
+        }
+
+        recompute(groupId);
+        return rejected;
+    }
+
+    /**
+     * @return die neu berechneten Gruppen (die Gruppe selbst und ihre Nachfahren)
+     */
+    public synchronized Set<Integer> addPermission(int groupId, String permission) {
+        PermissionSet current = own.getOrDefault(groupId, empty);
+        PermissionSet updated = current.with(permission);
+        if (updated == current) {
+            return Collections.emptySet();
+        }
+
+        own.put(groupId, updated);
+        return recompute(groupId);
+    }
+
+    public synchronized Set<Integer> removePermission(int groupId, String permission) {
+        PermissionSet current = own.get(groupId);
+        if (current == null || !current.contains(permission)) {
+            return Collections.emptySet();
+        }
+
+        own.put(groupId, current.without(permission));
+        return recompute(groupId);
+    }
+
+    public synchronized boolean wouldCreateCycle(int groupId, int parentId) {
+        if (groupId == parentId) {
+            return true;
+        }
+
+        // Zyklus genau dann, wenn die Gruppe schon ein Vorfahre des neuen Elternteils ist
+        Deque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> visited = new HashSet<>();
+        stack.push(parentId);
+
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            if (current == groupId) {
+                return true;
+            }
+            if (visited.add(current)) {
+                for (int ancestor : parents.getOrDefault(current, Collections.emptySet())) {
+                    stack.push(ancestor);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @throws IllegalArgumentException wenn die Kante einen Zyklus schließen würde
+     */
+    public synchronized Set<Integer> addParent(int groupId, int parentId) {
+        if (parents.getOrDefault(groupId, Collections.emptySet()).contains(parentId)) {
+            return Collections.emptySet();
+        }
+        if (!link(groupId, parentId)) {
+            throw new IllegalArgumentException("Inheritance would create a cycle");
+        }
+        return recompute(groupId);
+    }
+
+    public synchronized Set<Integer> removeParent(int groupId, int parentId) {
+        Set<Integer> groupParents = parents.get(groupId);
+        if (groupParents == null || !groupParents.remove(parentId)) {
+            return Collections.emptySet();
+        }
+
+        removeChild(parentId, groupId);
+        return recompute(groupId);
+    }
+
+    /**
+     * Entfernt die Gruppe samt aller Kanten von und zu ihr (wie ON DELETE CASCADE).
+     *
+     * @return die neu berechneten Nachfahren
+     */
+    public synchronized Set<Integer> remove(int groupId) {
+        Set<Integer> descendants = getDescendants(groupId);
+
+        own.remove(groupId);
+        effective.remove(groupId);
+        unlinkParents(groupId);
+
+        Set<Integer> groupChildren = children.remove(groupId);
+        if (groupChildren != null) {
+            for (int childId : groupChildren) {
+                parents.get(childId).remove(groupId);
+            }
+        }
+
+        resolve(descendants);
+        return descendants;
+    }
+
+    private boolean link(int groupId, int parentId) {
+        if (wouldCreateCycle(groupId, parentId)) {
+            return false;
+        }
+
+        parents.computeIfAbsent(groupId, id -> new LinkedHashSet<>()).add(parentId);
+        children.computeIfAbsent(parentId, id -> new HashSet<>()).add(groupId);
+        return true;
+    }
+
+    private void unlinkParents(int groupId) {
+        Set<Integer> groupParents = parents.remove(groupId);
+        if (groupParents != null) {
+            for (int parentId : groupParents) {
+                removeChild(parentId, groupId);
+            }
+        }
+    }
+
+    private void removeChild(int parentId, int childId) {
+        Set<Integer> parentChildren = children.get(parentId);
+        if (parentChildren != null) {
+            parentChildren.remove(childId);
+            if (parentChildren.isEmpty()) {
+                children.remove(parentId);
+            }
+        }
+    }
+
+    private Set<Integer> recompute(int groupId) {
+        Set<Integer> affected = withDescendants(groupId);
+        resolve(affected);
+        return affected;
+    }
+
+    private Set<Integer> withDescendants(int groupId) {
+        Set<Integer> result = new LinkedHashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(groupId);
+
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (result.add(current)) {
+                queue.addAll(children.getOrDefault(current, Collections.emptySet()));
+            }
+        }
+        return result;
+    }
+
+    // Berechnet die Gruppen so, dass Eltern aus derselben Menge immer vor ihren Kindern dran sind
+    private void resolve(Set<Integer> affected) {
+        Set<Integer> done = new HashSet<>();
+        for (int groupId : affected) {
+            resolve(groupId, affected, done);
+        }
+    }
+
+    private void resolve(int groupId, Set<Integer> affected, Set<Integer> done) {
+        if (!done.add(groupId)) {
+            return;
+        }
+
+        Set<Integer> groupParents = parents.getOrDefault(groupId, Collections.emptySet());
+        for (int parentId : groupParents) {
+            if (affected.contains(parentId)) {
+                resolve(parentId, affected, done);
+            }
+        }
+
+        if (own.containsKey(groupId)) {
+            effective.put(groupId, flatten(groupId, groupParents));
+        }
+    }
+
+    // union() gibt bei leeren oder enthaltenen Sets das vorhandene Objekt zurück, reine Ableitungen
+    // ohne eigene Permissions teilen sich also das Set ihres Elternteils
+    private PermissionSet flatten(int groupId, Set<Integer> groupParents) {
+        PermissionSet flattened = own.get(groupId);
+        for (int parentId : groupParents) {
+            flattened = flattened.union(effective.getOrDefault(parentId, empty));
+        }
+        return flattened;
+    }
+}
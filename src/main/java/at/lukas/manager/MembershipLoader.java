@@ -0,0 +1,57 @@
+package at.lukas.manager;
+
+import at.lukas.misc.UuidCodec;
+import at.lukas.storage.Storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Liest player_groups komplett in eine neue {@link MembershipTable} (database.preload-memberships).
+ * <p>
+ * Gelesen wird mit einem Cursor ({@link Storage#streamingFetchSize()}) in einer Transaktion,
+ * im Speicher liegt also nur die Tabelle selbst und sie zeigt einen festen Stand.
+ */
+public class MembershipLoader {
+    private final Storage storage;
+
+    public MembershipLoader(Storage storage) {
+        this.storage = storage;
+    }
+
+    public MembershipTable load(Connection conn) throws SQLException {
+        int expected = 0;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM player_groups");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                expected = rs.getInt(1);
+            }
+        }
+
+        MembershipTable table = new MembershipTable(expected);
+        String query = "SELECT uuid, group_id, %s AS expiry_millis FROM player_groups"
+                .formatted(storage.epochMillis("expiry"));
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(storage.streamingFetchSize());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    // wasNull() gilt für die zuletzt gelesene Spalte, die Ablaufzeit also zuerst lesen
+                    long expiry = rs.getLong("expiry_millis");
+                    long expiryMillis = rs.wasNull() ? MembershipTable.PERMANENT : expiry;
+                    table.put(UuidCodec.fromBytes(rs.getBytes("uuid")), rs.getInt("group_id"), expiryMillis);
+                }
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        return table;
+    }
+}
@@ -0,0 +1,279 @@
+package at.lukas.manager;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Gruppe und Ablaufzeitpunkt aller Spieler aus player_groups (database.preload-memberships).
+ * <p>
+ * Offene Adressierung mit linearem Sondieren über parallele Arrays: die beiden Hälften der UUID
+ * als long, die Gruppen-ID als int und der Ablaufzeitpunkt als long. Das sind 28 Bytes pro Slot
+ * und keine Objekte pro Spieler, bei höchstens {@value #MAX_LOAD_PERCENT}% Füllgrad. Gelöscht wird
+ * per Backward-Shift, es bleiben also keine Grabsteine zurück.
+ * <p>
+ * Lesen läuft ohne Lock und ohne Allokation über einen optimistischen {@link StampedLock},
+ * nur wenn parallel geschrieben wurde, wird mit Lock wiederholt. Schreiben ist exklusiv.
+ */
+public final class MembershipTable {
+    /**
+     * Gruppen-ID für Spieler ohne Eintrag. AUTO_INCREMENT beginnt bei 1, 0 ist also nie eine echte Gruppe.
+     */
+    public static final int ABSENT = 0;
+    public static final long PERMANENT = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_LOAD_PERCENT = 75;
+
+    private final StampedLock lock = new StampedLock();
+    private Slots slots;
+    private int size;
+
+    // Alle Arrays einer Größe in einem Objekt, damit ein optimistischer Leser beim Vergrößern
+    // nie Arrays unterschiedlicher Länge zu sehen bekommt
+    private static final class Slots {
+        final long[] mostBits;
+        final long[] leastBits;
+        final int[] groupIds;
+        final long[] expiries;
+        final int mask;
+
+        Slots(int capacity) {
+            mostBits = new long[capacity];
+            leastBits = new long[capacity];
+            groupIds = new int[capacity];
+            expiries = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    public MembershipTable() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize so viele Einträge passen ohne Vergrößern hinein
+     */
+    public MembershipTable(int expectedSize) {
+        this.slots = new Slots(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return die Gruppen-ID oder {@link #ABSENT}
+     */
+    public int groupId(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        Slots current = slots;
+        int index = indexOf(current, most, least);
+        int groupId = index >= 0 ? current.groupIds[index] : ABSENT;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = slots;
+                index = indexOf(current, most, least);
+                groupId = index >= 0 ? current.groupIds[index] : ABSENT;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return groupId;
+    }
+
+    /**
+     * @return Ablaufzeitpunkt in Millisekunden, {@link #PERMANENT} für dauerhafte oder fehlende Einträge
+     */
+    public long expiry(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        Slots current = slots;
+        int index = indexOf(current, most, least);
+        long expiry = index >= 0 ? current.expiries[index] : PERMANENT;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = slots;
+                index = indexOf(current, most, least);
+                expiry = index >= 0 ? current.expiries[index] : PERMANENT;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return expiry;
+    }
+
+    public void put(UUID uuid, int groupId, long expiryMillis) {
+        if (groupId == ABSENT) {
+            throw new IllegalArgumentException("Invalid group id " + groupId);
+        }
+
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 100L > (long) slots.capacity() * MAX_LOAD_PERCENT) {
+                resize(slots.capacity() * 2);
+            }
+
+            Slots current = slots;
+            int index = hash(most, least) & current.mask;
+            while (current.groupIds[index] != ABSENT) {
+                if (current.mostBits[index] == most && current.leastBits[index] == least) {
+                    current.groupIds[index] = groupId;
+                    current.expiries[index] = expiryMillis;
+                    return;
+                }
+                index = (index + 1) & current.mask;
+            }
+
+            current.mostBits[index] = most;
+            current.leastBits[index] = least;
+            current.expiries[index] = expiryMillis;
+            current.groupIds[index] = groupId;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean remove(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+
+        long stamp = lock.writeLock();
+        try {
+            Slots current = slots;
+            int hole = indexOf(current, most, least);
+            if (hole < 0) {
+                return false;
+            }
+
+            // Nachfolgende Einträge derselben Sondierungskette nachrücken lassen
+            int mask = current.mask;
+            int next = (hole + 1) & mask;
+            while (current.groupIds[next] != ABSENT) {
+                int ideal = hash(current.mostBits[next], current.leastBits[next]) & mask;
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    current.mostBits[hole] = current.mostBits[next];
+                    current.leastBits[hole] = current.leastBits[next];
+                    current.groupIds[hole] = current.groupIds[next];
+                    current.expiries[hole] = current.expiries[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+
+            current.groupIds[hole] = ABSENT;
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Setzt alle Spieler einer Gruppe auf eine andere (dauerhaft), z.B. wenn die Gruppe gelöscht wurde.
+     *
+     * @return Anzahl der geänderten Einträge
+     */
+    public int replaceGroup(int fromGroupId, int toGroupId) {
+        long stamp = lock.writeLock();
+        try {
+            Slots current = slots;
+            int changed = 0;
+            for (int i = 0; i < current.capacity(); i++) {
+                if (current.groupIds[i] == fromGroupId && fromGroupId != ABSENT) {
+                    current.groupIds[i] = toGroupId;
+                    current.expiries[i] = PERMANENT;
+                    changed++;
+                }
+            }
+            return changed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long memoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) slots.capacity() * (8 + 8 + 4 + 8);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void resize(int capacity) {
+        Slots old = slots;
+        Slots resized = new Slots(capacity);
+
+        for (int i = 0; i < old.capacity(); i++) {
+            if (old.groupIds[i] == ABSENT) {
+                continue;
+            }
+
+            int index = hash(old.mostBits[i], old.leastBits[i]) & resized.mask;
+            while (resized.groupIds[index] != ABSENT) {
+                index = (index + 1) & resized.mask;
+            }
+            resized.mostBits[index] = old.mostBits[i];
+            resized.leastBits[index] = old.leastBits[i];
+            resized.groupIds[index] = old.groupIds[i];
+            resized.expiries[index] = old.expiries[i];
+        }
+
+        slots = resized;
+    }
+
+    // Höchstens capacity Versuche, damit ein optimistischer Leser auf halb geschriebenen Arrays nie hängen bleibt
+    private static int indexOf(Slots slots, long most, long least) {
+        int mask = slots.mask;
+        int index = hash(most, least) & mask;
+
+        for (int probes = 0; probes <= mask; probes++) {
+            if (slots.groupIds[index] == ABSENT) {
+                return -1;
+            }
+            if (slots.mostBits[index] == most && slots.leastBits[index] == least) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ (least * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= h >>> 32;
+        return (int) h;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) expectedSize * 100 / MAX_LOAD_PERCENT + 1);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Too many memberships: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+}
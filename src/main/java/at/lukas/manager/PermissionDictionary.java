@@ -0,0 +1,64 @@
+package at.lukas.manager;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vergibt jedem Permission-Knoten eine fortlaufende int-ID, damit {@link PermissionSet}s als Bitsets
+ * abgelegt werden können. Jeder Knoten liegt damit genau einmal im Speicher, egal in wie vielen
+ * Gruppen er vorkommt.
+ * <p>
+ * IDs werden nie wieder freigegeben - die Anzahl verschiedener Knoten ist durch die Gruppen
+ * und die registrierten Permissions begrenzt. Lesen ist lockfrei, nur neue Knoten werden
+ * unter Lock vergeben.
+ */
+public final class PermissionDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] nodes = new String[256];
+    private int size;
+
+    /**
+     * Liefert die ID des Knotens und vergibt eine neue, wenn er noch unbekannt ist.
+     */
+    public int intern(String node) {
+        Integer id = ids.get(node);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(node);
+            if (id != null) {
+                return id;
+            }
+
+            String[] current = nodes;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = node;
+            nodes = current;
+
+            // Erst nach dem Eintrag im Array veröffentlichen, damit node(id) nie null liefert
+            ids.put(node, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @return die ID oder -1, wenn der Knoten nie vergeben wurde
+     */
+    public int lookup(String node) {
+        Integer id = ids.get(node);
+        return id != null ? id : -1;
+    }
+
+    public String node(int id) {
+        return nodes[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
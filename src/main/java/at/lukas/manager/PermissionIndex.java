@@ -0,0 +1,88 @@
+package at.lukas.manager;
+
+import org.bukkit.permissions.Permission;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sortierter Index über alle registrierten Permission-Namen.
+ * <p>
+ * Ein Wildcard wie "essentials.*" wird über einen Bereich im sortierten Set
+ * aufgelöst, die Kosten hängen also nur von der Größe des Ergebnisses ab und
+ * nicht von der Anzahl aller registrierten Permissions.
+ * <p>
+ * Zu jedem Namen wird gemerkt, welche Permissions ihn deklarieren (sich selbst oder als Kind).
+ * Ein Name verschwindet erst, wenn keine registrierte Permission ihn mehr deklariert.
+ */
+public class PermissionIndex {
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> declaredBy = new HashMap<>();
+
+    public synchronized void rebuild(Collection<Permission> permissions) {
+        names.clear();
+        declaredBy.clear();
+        addAll(permissions);
+    }
+
+    public synchronized void addAll(Collection<Permission> permissions) {
+        for (Permission permission : permissions) {
+            add(permission);
+        }
+    }
+
+    public synchronized void removeAll(Collection<Permission> permissions) {
+        for (Permission permission : permissions) {
+            undeclare(permission.getName(), permission.getName());
+            for (String child : permission.getChildren().keySet()) {
+                undeclare(child, permission.getName());
+            }
+        }
+    }
+
+    public synchronized void add(Permission permission) {
+        declare(permission.getName(), permission.getName());
+        // Kinder sind oft nicht separat registriert, zählen für Wildcards aber mit
+        for (String child : permission.getChildren().keySet()) {
+            declare(child, permission.getName());
+        }
+    }
+
+    /**
+     * Alle Permissions, die mit dem gegebenen Prefix beginnen (z.B. "essentials.").
+     */
+    public NavigableSet<String> expand(String prefix) {
+        return names.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    public NavigableSet<String> all() {
+        return names;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private void declare(String name, String declaringPermission) {
+        declaredBy.computeIfAbsent(name, key -> new HashSet<>()).add(declaringPermission);
+        names.add(name);
+    }
+
+    private void undeclare(String name, String declaringPermission) {
+        Set<String> declaring = declaredBy.get(name);
+        if (declaring == null) {
+            return;
+        }
+
+        declaring.remove(declaringPermission);
+        if (declaring.isEmpty()) {
+            declaredBy.remove(name);
+            names.remove(name);
+        }
+    }
+}
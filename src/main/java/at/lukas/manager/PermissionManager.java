@@ -3,115 +3,237 @@ package at.lukas.manager;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 public class PermissionManager {
+    // Pro Spieler eine registrierte Eltern-Permission, deren Kinder die Knoten der Gruppe sind
+    private static final String PLAYER_PERMISSION_PREFIX = "groupsystem.internal.player.";
 
     private final Plugin plugin;
     private final Logger logger;
     private final DatabaseManager dbManager;
+    private final PermissionDictionary dictionary;
+    private final PermissionSet noPermissions;
 
     private final Map<UUID, PermissionAttachment> attachments = new HashMap<>();
+    private final Map<UUID, Permission> playerPermissions = new HashMap<>();
+    // Die aktuell im Attachment gesetzten Knoten (klein geschrieben, Wildcards bereits expandiert)
+    private final Map<UUID, PermissionSet> applied = new HashMap<>();
+    // Aufgelöste Knoten pro Gruppen-Set - alle Mitglieder einer Gruppe teilen sich einen Eintrag,
+    // ersetzte Sets fallen mit dem GC heraus
+    private final Map<PermissionSet, Resolved> resolved = new WeakHashMap<>();
+    private final PermissionIndex permissionIndex = new PermissionIndex();
+    // Spieler mit Wildcards müssen neu berechnet werden, wenn sich der Index ändert
+    private final Set<UUID> wildcardHolders = ConcurrentHashMap.newKeySet();
+
+    private record Resolved(PermissionSet nodes, boolean hasWildcard) {
+    }
 
     public PermissionManager(Plugin plugin, DatabaseManager dbManager) {
         this.plugin = plugin;
         this.dbManager = dbManager;
         this.logger = plugin.getLogger();
+        this.dictionary = dbManager.getPermissionDictionary();
+        this.noPermissions = PermissionSet.empty(dictionary);
+
+        permissionIndex.rebuild(registeredPermissions());
     }
 
     public void applyPermissions(Player player) {
-        removePermissions(player);
-
-        dbManager.getPlayerPermissions(player.getUniqueId()).thenAccept(permissions -> {
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                if (!player.isOnline()) {
-                    return;
-                }
-
-                PermissionAttachment attachment = player.addAttachment(plugin);
-
-                int count = 0;
-                for (String permission : permissions) {
-                    if (permission.endsWith(".*")) {
-                        // Handle wildcard - expand to all matching permissions
-                        String prefix = permission.substring(0, permission.length() - 1); // Remove *
-
-                        // Add the wildcard itself
-                        attachment.setPermission(permission, true);
-                        count++;
-
-                        // Add all registered permissions that start with this prefix
-                        for (Permission perm : plugin.getServer().getPluginManager().getPermissions()) {
-                            if (perm.getName().startsWith(prefix)) {
-                                attachment.setPermission(perm.getName(), true);
-                                count++;
-                            }
-                        }
-
-                        logger.info("Expanded wildcard '" + permission + "' to " + count + " permissions for " + player.getName());
-                    } else if (permission.equals("*")) {
-                        // Give ALL permissions
-                        attachment.setPermission("*", true);
-                        for (Permission perm : plugin.getServer().getPluginManager().getPermissions()) {
-                            attachment.setPermission(perm.getName(), true);
-                        }
-                        count = plugin.getServer().getPluginManager().getPermissions().size();
-                        logger.info("Gave ALL permissions (*) to " + player.getName());
-                    } else {
-                        // Normal permission
-                        attachment.setPermission(permission, true);
-                        count++;
-                    }
-                }
-
-                attachments.put(player.getUniqueId(), attachment);
-
-                if (count > 0) {
-                    logger.info("Applied " + count + " permission(s) to " + player.getName());
-                }
-            });
-        }).exceptionally(e -> {
-            logger.warning("Failed to apply permissions for " + player.getName() + ": " + e.getMessage());
-            return null;
+        if (!plugin.getServer().isPrimaryThread()) {
+            plugin.getServer().getScheduler().runTask(plugin, () -> applyPermissions(player));
+            return;
+        }
+
+        applyPermissions(player, dbManager.getCachedPlayerPermissions(player.getUniqueId()));
+    }
+
+    /**
+     * Wendet die übergebenen Permissions sofort an. Muss auf dem Main-Thread aufgerufen werden.
+     * <p>
+     * Das Attachment setzt nur eine registrierte Eltern-Permission pro Spieler, die Knoten sind deren
+     * Kinder. Geändert werden nur hinzugekommene und weggefallene Kinder, danach wird einmal neu
+     * berechnet (unterstützter Weg laut {@link Permission#getChildren()}). Der Spieler ist also nie
+     * kurz ohne Permissions. Für ein {@link PermissionSet} aus dem Cache wird die Auflösung
+     * wiederverwendet, der Vergleich mit dem bisherigen Stand läuft dann nur noch über die Bitsets.
+     */
+    public void applyPermissions(Player player, Collection<String> permissions) {
+        if (!player.isOnline()) {
+            return;
+        }
+
+        UUID uuid = player.getUniqueId();
+        Resolved resolution = permissions instanceof PermissionSet set
+                ? resolved.computeIfAbsent(set, this::resolve)
+                : resolve(permissions);
+        PermissionSet target = resolution.nodes();
+
+        if (resolution.hasWildcard()) {
+            wildcardHolders.add(uuid);
+        } else {
+            wildcardHolders.remove(uuid);
+        }
+
+        PermissionAttachment attachment = attachments.get(uuid);
+        if (attachment == null || attachment.getPermissible() != player) {
+            // Neuer Login (oder altes Attachment eines vorherigen Player-Objekts)
+            if (attachment != null) {
+                attachment.remove();
+            }
+
+            Permission parent = playerPermission(uuid);
+            parent.getChildren().clear();
+            for (String node : target) {
+                parent.getChildren().put(node, true);
+            }
+
+            attachment = player.addAttachment(plugin);
+            attachment.setPermission(parent, true);
+            attachments.put(uuid, attachment);
+            applied.put(uuid, target);
+
+            logger.info("Applied " + target.size() + " permissions to " + player.getName());
+            return;
+        }
+
+        PermissionSet current = applied.getOrDefault(uuid, noPermissions);
+        PermissionSet removed = current.difference(target);
+        PermissionSet added = target.difference(current);
+
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        Map<String, Boolean> children = playerPermission(uuid).getChildren();
+        for (String node : removed) {
+            children.remove(node);
+        }
+        for (String node : added) {
+            children.put(node, true);
+        }
+        player.recalculatePermissions();
+        applied.put(uuid, target);
+
+        logger.info("Updated permissions for " + player.getName() + ": +" + added.size() + " -" + removed.size()
+                + " (" + target.size() + " total)");
+    }
+
+    private Permission playerPermission(UUID uuid) {
+        return playerPermissions.computeIfAbsent(uuid, key -> {
+            String name = PLAYER_PERMISSION_PREFIX + key;
+            PluginManager pluginManager = plugin.getServer().getPluginManager();
+
+            // Kann nach einem Reload noch registriert sein
+            Permission existing = pluginManager.getPermission(name);
+            if (existing != null) {
+                return existing;
+            }
+
+            Permission permission = new Permission(name, "Group permissions of " + key, PermissionDefault.FALSE, new LinkedHashMap<>());
+            pluginManager.addPermission(permission);
+            return permission;
         });
     }
 
+    // Klein schreiben und Wildcards gegen die registrierten Permissions expandieren
+    private Resolved resolve(Collection<String> permissions) {
+        List<String> nodes = new ArrayList<>();
+        boolean hasWildcard = false;
+
+        for (String permission : permissions) {
+            String node = permission.toLowerCase(Locale.ROOT);
+
+            if (node.equals("*")) {
+                // Give ALL permissions
+                hasWildcard = true;
+                nodes.add("*");
+                nodes.addAll(permissionIndex.all());
+            } else if (node.endsWith(".*")) {
+                // Wildcard selbst plus alle registrierten Permissions mit diesem Prefix
+                hasWildcard = true;
+                nodes.add(node);
+                nodes.addAll(permissionIndex.expand(node.substring(0, node.length() - 1)));
+            } else {
+                nodes.add(node);
+            }
+        }
+
+        return new Resolved(PermissionSet.of(dictionary, nodes), hasWildcard);
+    }
+
     public void removePermissions(Player player) {
         removePermissions(player.getUniqueId());
     }
 
     public void removePermissions(UUID uuid) {
+        wildcardHolders.remove(uuid);
+        applied.remove(uuid);
         PermissionAttachment attachment = attachments.remove(uuid);
         if (attachment != null) {
             attachment.remove();
         }
+
+        Permission parent = playerPermissions.remove(uuid);
+        if (parent != null) {
+            plugin.getServer().getPluginManager().removePermission(parent);
+        }
+    }
+
+    public void rebuildPermissionIndex() {
+        permissionIndex.rebuild(registeredPermissions());
+        resolved.clear();
+        refreshWildcardHolders();
     }
 
-    public void refreshAllPlayers() {
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            for (Player player : plugin.getServer().getOnlinePlayers()) {
+    public void indexPermissions(Collection<Permission> permissions) {
+        if (permissions.isEmpty()) {
+            return;
+        }
+
+        permissionIndex.addAll(permissions);
+        resolved.clear();
+        refreshWildcardHolders();
+    }
+
+    public void unindexPermissions(Collection<Permission> permissions) {
+        if (permissions.isEmpty()) {
+            return;
+        }
+
+        permissionIndex.removeAll(permissions);
+        resolved.clear();
+        refreshWildcardHolders();
+    }
+
+    private void refreshWildcardHolders() {
+        for (UUID uuid : wildcardHolders) {
+            Player player = plugin.getServer().getPlayer(uuid);
+            if (player != null && player.isOnline()) {
                 applyPermissions(player);
             }
-            logger.info("Refreshed permissions for all online players");
-        });
+        }
     }
 
-    public void refreshPlayersInGroup(String groupName) {
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            for (Player player : plugin.getServer().getOnlinePlayers()) {
-                String playerGroup = dbManager.getPlayerGroup(player.getUniqueId());
-                if (groupName.equalsIgnoreCase(playerGroup)) {
-                    applyPermissions(player);
-                }
-            }
-            logger.info("Refreshed permissions for players in group: " + groupName);
-        });
+    // Ohne die eigenen Spieler-Permissions, sonst bekäme "*" über deren Kinder die Knoten aller anderen Spieler
+    private List<Permission> registeredPermissions() {
+        return plugin.getServer().getPluginManager().getPermissions().stream()
+                .filter(permission -> !permission.getName().startsWith(PLAYER_PERMISSION_PREFIX))
+                .toList();
     }
 
     public boolean hasPermission(Player player, String permission) {
@@ -0,0 +1,153 @@
+package at.lukas.manager;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unveränderliches Set von Permission-Knoten als Bitset über die IDs eines {@link PermissionDictionary}.
+ * <p>
+ * Vereinigung (Vererbung), Differenz (inkrementelles Anwenden) und contains sind Operationen
+ * auf 64-Bit-Wörtern statt auf Strings. Iteriert wird in ID-Reihenfolge, also in der
+ * Reihenfolge, in der die Knoten zum ersten Mal vorkamen. Alle Mengenoperationen setzen
+ * voraus, dass beide Sets dasselbe Dictionary verwenden.
+ */
+public final class PermissionSet extends AbstractSet<String> {
+    private final PermissionDictionary dictionary;
+    private final BitSet bits;
+    private final int size;
+    private int hash;
+
+    private PermissionSet(PermissionDictionary dictionary, BitSet bits) {
+        this.dictionary = dictionary;
+        this.bits = bits;
+        this.size = bits.cardinality();
+    }
+
+    public static PermissionSet empty(PermissionDictionary dictionary) {
+        return new PermissionSet(dictionary, new BitSet());
+    }
+
+    public static PermissionSet of(PermissionDictionary dictionary, Collection<String> nodes) {
+        if (nodes instanceof PermissionSet set && set.dictionary == dictionary) {
+            return set;
+        }
+
+        BitSet bits = new BitSet();
+        for (String node : nodes) {
+            bits.set(dictionary.intern(node));
+        }
+        return new PermissionSet(dictionary, bits);
+    }
+
+    public boolean containsId(int id) {
+        return id >= 0 && bits.get(id);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String node && containsId(dictionary.lookup(node));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public PermissionSet with(String node) {
+        int id = dictionary.intern(node);
+        if (bits.get(id)) {
+            return this;
+        }
+
+        BitSet updated = (BitSet) bits.clone();
+        updated.set(id);
+        return new PermissionSet(dictionary, updated);
+    }
+
+    public PermissionSet without(String node) {
+        int id = dictionary.lookup(node);
+        if (!containsId(id)) {
+            return this;
+        }
+
+        BitSet updated = (BitSet) bits.clone();
+        updated.clear(id);
+        return new PermissionSet(dictionary, updated);
+    }
+
+    public PermissionSet union(PermissionSet other) {
+        if (other.isEmpty() || other == this) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+
+        BitSet updated = (BitSet) bits.clone();
+        updated.or(other.bits);
+        return updated.cardinality() == size ? this : new PermissionSet(dictionary, updated);
+    }
+
+    /**
+     * Alle Knoten aus diesem Set, die in other nicht vorkommen.
+     */
+    public PermissionSet difference(PermissionSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return this;
+        }
+
+        BitSet updated = (BitSet) bits.clone();
+        updated.andNot(other.bits);
+        return updated.cardinality() == size ? this : new PermissionSet(dictionary, updated);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+
+                String node = dictionary.node(next);
+                next = bits.nextSetBit(next + 1);
+                return node;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PermissionSet other && other.dictionary == dictionary) {
+            return bits.equals(other.bits);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        // Wie von Set verlangt die Summe der Element-Hashes, einmal berechnet
+        int h = hash;
+        if (h == 0 && size > 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+}
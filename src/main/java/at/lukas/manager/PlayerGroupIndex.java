@@ -0,0 +1,117 @@
+package at.lukas.manager;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gruppe pro geladenem Spieler plus umgekehrter Index Gruppe → Mitglieder.
+ * <p>
+ * Beide Richtungen werden innerhalb von {@link ConcurrentHashMap#compute} des Spielers
+ * geändert, ein Spieler steht also nie gleichzeitig in zwei Mitgliederlisten.
+ * Gruppennamen werden klein geschrieben gespeichert.
+ */
+public final class PlayerGroupIndex {
+    private final Map<UUID, String> groupByPlayer = new ConcurrentHashMap<>();
+    private final Map<String, Set<UUID>> membersByGroup = new ConcurrentHashMap<>();
+
+    public String get(UUID playerUuid) {
+        return groupByPlayer.get(playerUuid);
+    }
+
+    public boolean contains(UUID playerUuid) {
+        return groupByPlayer.containsKey(playerUuid);
+    }
+
+    public void put(UUID playerUuid, String groupName) {
+        String group = groupName.toLowerCase(Locale.ROOT);
+
+        groupByPlayer.compute(playerUuid, (uuid, previous) -> {
+            if (previous != null && !previous.equals(group)) {
+                removeMember(previous, uuid);
+            }
+            addMember(group, uuid);
+            return group;
+        });
+    }
+
+    /**
+     * Wie {@link #put}, aber nur für noch nicht geladene Spieler.
+     */
+    public void putIfAbsent(UUID playerUuid, String groupName) {
+        String group = groupName.toLowerCase(Locale.ROOT);
+
+        groupByPlayer.computeIfAbsent(playerUuid, uuid -> {
+            addMember(group, uuid);
+            return group;
+        });
+    }
+
+    /**
+     * Wie {@link #put}, aber nur für bereits geladene Spieler.
+     */
+    public void replace(UUID playerUuid, String groupName) {
+        String group = groupName.toLowerCase(Locale.ROOT);
+
+        groupByPlayer.computeIfPresent(playerUuid, (uuid, previous) -> {
+            if (!previous.equals(group)) {
+                removeMember(previous, uuid);
+                addMember(group, uuid);
+            }
+            return group;
+        });
+    }
+
+    public void remove(UUID playerUuid) {
+        groupByPlayer.computeIfPresent(playerUuid, (uuid, previous) -> {
+            removeMember(previous, uuid);
+            return null;
+        });
+    }
+
+    /**
+     * Live-Ansicht der geladenen Mitglieder, leer wenn die Gruppe keine hat.
+     */
+    public Set<UUID> members(String groupName) {
+        Set<UUID> members = membersByGroup.get(groupName.toLowerCase(Locale.ROOT));
+        return members != null ? Collections.unmodifiableSet(members) : Set.of();
+    }
+
+    public int count(String groupName) {
+        Set<UUID> members = membersByGroup.get(groupName.toLowerCase(Locale.ROOT));
+        return members != null ? members.size() : 0;
+    }
+
+    public Set<UUID> players() {
+        return new HashSet<>(groupByPlayer.keySet());
+    }
+
+    public int size() {
+        return groupByPlayer.size();
+    }
+
+    public void clear() {
+        for (UUID playerUuid : groupByPlayer.keySet()) {
+            remove(playerUuid);
+        }
+    }
+
+    private void addMember(String group, UUID playerUuid) {
+        membersByGroup.compute(group, (key, members) -> {
+            Set<UUID> result = members != null ? members : ConcurrentHashMap.newKeySet();
+            result.add(playerUuid);
+            return result;
+        });
+    }
+
+    private void removeMember(String group, UUID playerUuid) {
+        membersByGroup.computeIfPresent(group, (key, members) -> {
+            members.remove(playerUuid);
+            return members.isEmpty() ? null : members;
+        });
+    }
+}
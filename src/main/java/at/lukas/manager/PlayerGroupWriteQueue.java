@@ -0,0 +1,333 @@
+package at.lukas.manager;
+
+import at.lukas.CustomGroupSystem;
+import at.lukas.metrics.LatencyHistogram;
+import at.lukas.misc.UuidCodec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-Behind-Queue für Gruppenzuweisungen (database.write-behind).
+ * <p>
+ * Ausstehende Zuweisungen werden pro Spieler zusammengefasst (der letzte Schreibvorgang gewinnt)
+ * und gesammelt als JDBC-Batch geschrieben - entweder im festen Intervall oder sobald
+ * batch-size Einträge anstehen. Jeder Aufrufer bekommt ein Future, das erst nach dem Commit
+ * abgeschlossen wird.
+ * <p>
+ * Bis zum Commit bleibt ein Batch als "in flight" sichtbar, Lesezugriffe sehen also nie den alten Stand.
+ * Schlägt ein Batch wegen der Daten fehl, wird er halbiert, bis die fehlerhaften Zeilen isoliert sind.
+ * Diese werden höchstens {@value #MAX_ATTEMPTS} Mal versucht und dann mit Fehler abgeschlossen.
+ * Verbindungsfehler werden ohne Limit wiederholt, damit bei einem Datenbankausfall nichts verloren geht.
+ * <p>
+ * Nach {@link #shutdown} wird jede weitere Zuweisung sofort im aufrufenden Thread geschrieben.
+ */
+public class PlayerGroupWriteQueue {
+    public record PendingWrite(int groupId, Long expiryMillis, CompletableFuture<Void> future, int attempts) {
+    }
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final CustomGroupSystem plugin;
+    private final ChangeLog changeLog;
+    private final LatencyHistogram flushLatency;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    private final Object lock = new Object();
+    private Map<UUID, PendingWrite> pending = new HashMap<>();
+    // Gerade geschriebener Batch, bis er committed oder zurückgestellt ist
+    private Map<UUID, PendingWrite> inFlight = Map.of();
+    // Gelöschte Gruppe -> Ersatzgruppe, für Batches, die beim Löschen schon unterwegs waren
+    private final Map<Integer, Integer> replacedGroups = new HashMap<>();
+    private boolean closed;
+
+    public PlayerGroupWriteQueue(CustomGroupSystem plugin, ChangeLog changeLog, long flushIntervalMillis, int batchSize) {
+        this.plugin = plugin;
+        this.flushLatency = plugin.getMetrics().histogram("flushWriteQueue");
+        this.changeLog = changeLog;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "groupsystem-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<Void> enqueue(UUID playerUuid, int groupId, Long expiryMillis) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        PendingWrite write;
+        int size = 0;
+        boolean afterShutdown;
+
+        synchronized (lock) {
+            write = redirect(new PendingWrite(groupId, expiryMillis, future, 0));
+            afterShutdown = closed;
+
+            if (!afterShutdown) {
+                PendingWrite replaced = pending.put(playerUuid, write);
+                size = pending.size();
+
+                if (replaced != null) {
+                    // Der ersetzte Schreibvorgang ist committed, sobald der neuere committed ist
+                    chain(future, replaced.future());
+                }
+            }
+        }
+
+        if (afterShutdown) {
+            return writeNow(playerUuid, write);
+        }
+
+        if (size >= batchSize) {
+            try {
+                flusher.execute(this::flushSafely);
+            } catch (RejectedExecutionException e) {
+                // shutdown() läuft bereits und schreibt den Eintrag mit
+            }
+        }
+
+        return future;
+    }
+
+    // Nach dem Shutdown gibt es keinen Flusher mehr, der Aufrufer wartet auf den Commit
+    private CompletableFuture<Void> writeNow(UUID playerUuid, PendingWrite write) {
+        try {
+            write(Map.of(playerUuid, write));
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to write group assignment for " + playerUuid + " after shutdown: " + e.getMessage());
+            write.future().completeExceptionally(e);
+        }
+        return write.future();
+    }
+
+    /**
+     * Noch nicht geschriebene Zuweisung eines Spielers, damit Lesezugriffe keine veralteten Daten liefern.
+     */
+    public PendingWrite getPending(UUID playerUuid) {
+        synchronized (lock) {
+            PendingWrite write = pending.get(playerUuid);
+            return write != null ? write : inFlight.get(playerUuid);
+        }
+    }
+
+    /**
+     * Schreibt ausstehende Zuweisungen einer gelöschten Gruppe (dauerhaft) auf die Ersatzgruppe um,
+     * damit sie nicht am Foreign Key scheitern.
+     */
+    public void replaceGroup(int fromGroupId, int toGroupId) {
+        synchronized (lock) {
+            replacedGroups.put(fromGroupId, toGroupId);
+            pending.replaceAll((uuid, write) -> redirect(write));
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Stoppt das Intervall und schreibt alles Ausstehende synchron in die Datenbank.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            closed = true;
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Map<UUID, PendingWrite> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            writeOrSplit(batch);
+        } finally {
+            finishInFlight();
+        }
+
+        // Was jetzt noch aussteht, wurde zurückgestellt und kann nicht mehr geschrieben werden
+        Map<UUID, PendingWrite> failed = drain();
+        finishInFlight();
+        if (failed.isEmpty()) {
+            plugin.getLogger().info("Flushed " + batch.size() + " pending group assignment(s) on shutdown");
+            return;
+        }
+
+        plugin.getLogger().severe("Failed to flush " + failed.size() + " pending group assignment(s) on shutdown");
+        IllegalStateException e = new IllegalStateException("Write-behind queue shut down before the assignment was written");
+        failed.values().forEach(write -> write.future().completeExceptionally(e));
+    }
+
+    private void flushSafely() {
+        Map<UUID, PendingWrite> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            writeOrSplit(batch);
+        } finally {
+            finishInFlight();
+            flushLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void writeOrSplit(Map<UUID, PendingWrite> batch) {
+        try {
+            write(batch);
+        } catch (SQLException e) {
+            if (batch.size() > 1 && !isConnectionError(e)) {
+                // Eine fehlerhafte Zeile soll nicht alle anderen blockieren
+                List<Map.Entry<UUID, PendingWrite>> entries = new ArrayList<>(batch.entrySet());
+                int half = entries.size() / 2;
+                writeOrSplit(toMap(entries.subList(0, half)));
+                writeOrSplit(toMap(entries.subList(half, entries.size())));
+                return;
+            }
+
+            requeue(batch, e);
+        }
+    }
+
+    private Map<UUID, PendingWrite> drain() {
+        synchronized (lock) {
+            Map<UUID, PendingWrite> batch = pending;
+            pending = new HashMap<>();
+            inFlight = batch;
+            return batch;
+        }
+    }
+
+    private void finishInFlight() {
+        synchronized (lock) {
+            inFlight = Map.of();
+        }
+    }
+
+    private void requeue(Map<UUID, PendingWrite> failed, SQLException e) {
+        boolean counted = !isConnectionError(e);
+        List<PendingWrite> givenUp = new ArrayList<>();
+
+        synchronized (lock) {
+            for (Map.Entry<UUID, PendingWrite> entry : failed.entrySet()) {
+                PendingWrite write = entry.getValue();
+                if (write.future().isDone()) {
+                    // Bereits in einem früheren Teil-Batch committed
+                    continue;
+                }
+
+                int attempts = counted ? write.attempts() + 1 : write.attempts();
+                if (attempts >= MAX_ATTEMPTS) {
+                    givenUp.add(write);
+                    continue;
+                }
+
+                PendingWrite retry = redirect(new PendingWrite(write.groupId(), write.expiryMillis(), write.future(), attempts));
+                PendingWrite newer = pending.putIfAbsent(entry.getKey(), retry);
+                if (newer != null) {
+                    chain(newer.future(), write.future());
+                }
+            }
+        }
+
+        if (!givenUp.isEmpty()) {
+            plugin.getLogger().severe("Giving up on " + givenUp.size() + " group assignment(s) after " + MAX_ATTEMPTS + " attempts: " + e.getMessage());
+            givenUp.forEach(write -> write.future().completeExceptionally(e));
+        } else {
+            plugin.getLogger().warning("Failed to flush " + failed.size() + " group assignment(s), retrying: " + e.getMessage());
+        }
+    }
+
+    private PendingWrite redirect(PendingWrite write) {
+        Integer replacement = replacedGroups.get(write.groupId());
+        if (replacement == null) {
+            return write;
+        }
+        return new PendingWrite(replacement, null, write.future(), write.attempts());
+    }
+
+    private void write(Map<UUID, PendingWrite> batch) throws SQLException {
+        List<Map.Entry<UUID, PendingWrite>> entries = new ArrayList<>(batch.entrySet());
+
+        try (Connection conn = plugin.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(plugin.getStorage().upsertPlayerGroupQuery())) {
+                for (int start = 0; start < entries.size(); start += batchSize) {
+                    List<Map.Entry<UUID, PendingWrite>> chunk = entries.subList(start, Math.min(start + batchSize, entries.size()));
+
+                    for (Map.Entry<UUID, PendingWrite> entry : chunk) {
+                        PendingWrite write = entry.getValue();
+
+                        stmt.setBytes(1, UuidCodec.toBytes(entry.getKey()));
+                        stmt.setInt(2, write.groupId());
+                        if (write.expiryMillis() != null) {
+                            stmt.setLong(3, write.expiryMillis() / 1000);
+                        } else {
+                            stmt.setNull(3, Types.BIGINT);
+                        }
+                        stmt.addBatch();
+                    }
+
+                    stmt.executeBatch();
+                    if (changeLog != null) {
+                        changeLog.appendPlayerChanges(conn, chunk.stream().map(Map.Entry::getKey).toList());
+                    }
+                    conn.commit();
+
+                    for (Map.Entry<UUID, PendingWrite> entry : chunk) {
+                        entry.getValue().future().complete(null);
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientConnectionException || (state != null && state.startsWith("08"));
+    }
+
+    private static Map<UUID, PendingWrite> toMap(List<Map.Entry<UUID, PendingWrite>> entries) {
+        Map<UUID, PendingWrite> map = new LinkedHashMap<>();
+        for (Map.Entry<UUID, PendingWrite> entry : entries) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    private static void chain(CompletableFuture<Void> source, CompletableFuture<Void> target) {
+        source.whenComplete((ignored, e) -> {
+            if (e != null) {
+                target.completeExceptionally(e);
+            } else {
+                target.complete(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,405 @@
+package at.lukas.manager;
+
+import at.lukas.misc.RefreshScheduler;
+import at.lukas.misc.SignRenderer;
+import at.lukas.misc.SignTemplate;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.block.sign.Side;
+import org.bukkit.block.sign.SignSide;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Hält Platzhalter-Schilder aktuell.
+ * <p>
+ * Die Rohzeilen liegen im PersistentDataContainer des Schildes, die Positionen aller
+ * Platzhalter-Schilder eines Chunks im PersistentDataContainer des Chunks. Beim Laden eines
+ * Chunks muss deshalb nichts gesucht werden. Ändert sich die Gruppe eines Spielers oder eine
+ * Gruppe selbst, werden nur die abhängigen Schilder in geladenen Chunks neu gerendert,
+ * höchstens signs.updates-per-tick pro Tick. Abhängige Schilder in nicht geladenen Chunks
+ * werden als veraltet markiert und erst beim nächsten Laden neu gerendert, alle anderen
+ * behalten ihren Text. Alles Main-Thread.
+ */
+public class SignManager implements RefreshScheduler.Listener {
+    private final Plugin plugin;
+    private final SignRenderer renderer;
+    private final int updatesPerTick;
+
+    private final NamespacedKey frontKey;
+    private final NamespacedKey backKey;
+    private final NamespacedKey chunkKey;
+
+    // Geladene Platzhalter-Schilder
+    private final Map<ChunkPos, Set<SignPos>> signsByChunk = new HashMap<>();
+
+    // Wovon der zuletzt gerenderte Text abhängt, auch für Schilder in entladenen Chunks
+    private final Map<SignPos, Dependencies> rendered = new HashMap<>();
+    private final Map<UUID, Set<SignPos>> signsByPlayer = new HashMap<>();
+    private final Map<String, Set<SignPos>> signsByGroup = new HashMap<>();
+    private final Map<String, Set<SignPos>> signsByName = new HashMap<>();
+
+    // Nicht geladene Schilder, deren Abhängigkeiten sich seit dem letzten Rendern geändert haben
+    private final Set<SignPos> stale = new HashSet<>();
+
+    private final LinkedHashSet<SignPos> pending = new LinkedHashSet<>();
+
+    private BukkitTask task;
+
+    record ChunkPos(UUID world, int x, int z) {
+    }
+
+    record Dependencies(Set<UUID> players, Set<String> groups, Set<String> names) {
+    }
+
+    record SignPos(UUID world, int x, int y, int z) {
+        ChunkPos chunk() {
+            return new ChunkPos(world, x >> 4, z >> 4);
+        }
+
+        // Position innerhalb des Chunks, für den PersistentDataContainer des Chunks
+        int pack() {
+            return (y << 8) | ((x & 15) << 4) | (z & 15);
+        }
+
+        static SignPos unpack(ChunkPos chunk, int packed) {
+            return new SignPos(chunk.world(), (chunk.x() << 4) | ((packed >> 4) & 15), packed >> 8, (chunk.z() << 4) | (packed & 15));
+        }
+
+        static SignPos of(Block block) {
+            return new SignPos(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+        }
+    }
+
+    public SignManager(Plugin plugin, SignRenderer renderer, int updatesPerTick) {
+        this.plugin = plugin;
+        this.renderer = renderer;
+        this.updatesPerTick = Math.max(1, updatesPerTick);
+
+        this.frontKey = new NamespacedKey(plugin, "sign_front");
+        this.backKey = new NamespacedKey(plugin, "sign_back");
+        this.chunkKey = new NamespacedKey(plugin, "placeholder_signs");
+    }
+
+    public void start() {
+        // Nach einem Reload sind bereits Chunks geladen
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                loadChunk(chunk);
+            }
+        }
+
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Merkt sich die Rohzeilen eines gerade beschriebenen Schildes. Der Text selbst wurde
+     * bereits im SignChangeEvent gesetzt, gespeichert wird erst im nächsten Tick, wenn der
+     * Server die neuen Zeilen übernommen hat.
+     */
+    public void track(Block block, Side side, String[] rawLines) {
+        SignPos pos = SignPos.of(block);
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (!(block.getState() instanceof Sign sign)) {
+                return;
+            }
+
+            sign.getPersistentDataContainer().set(keyOf(side), PersistentDataType.STRING, String.join("\n", rawLines));
+            sign.update();
+
+            addToChunk(block.getChunk(), pos);
+            pending.add(pos);
+        });
+    }
+
+    /**
+     * Eine Seite eines Platzhalter-Schildes wurde zu Text ohne Platzhalter umgeschrieben (seit 1.20
+     * lassen sich Schilder nachträglich bearbeiten). Die alte Vorlage darf den neuen Text nicht
+     * wieder überschreiben. Hat keine Seite mehr eine Vorlage, wird das Schild nicht mehr verfolgt.
+     */
+    public void untrackSide(Block block, Side side) {
+        SignPos pos = SignPos.of(block);
+        if (!signsByChunk.getOrDefault(pos.chunk(), Set.of()).contains(pos)) {
+            return;
+        }
+
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (!(block.getState() instanceof Sign sign)) {
+                untrack(block);
+                return;
+            }
+
+            PersistentDataContainer data = sign.getPersistentDataContainer();
+            if (data.has(keyOf(side), PersistentDataType.STRING)) {
+                data.remove(keyOf(side));
+                sign.update();
+            }
+
+            if (data.has(frontKey, PersistentDataType.STRING) || data.has(backKey, PersistentDataType.STRING)) {
+                // Abhängigkeiten der verbleibenden Seite neu erfassen
+                pending.add(pos);
+            } else {
+                untrack(block);
+            }
+        });
+    }
+
+    public void untrack(Block block) {
+        SignPos pos = SignPos.of(block);
+        Set<SignPos> inChunk = signsByChunk.get(pos.chunk());
+        if (inChunk == null || !inChunk.remove(pos)) {
+            return;
+        }
+
+        unindex(pos);
+        pending.remove(pos);
+        stale.remove(pos);
+        removeFromChunk(block.getChunk(), pos);
+    }
+
+    public void loadChunk(Chunk chunk) {
+        int[] packed = chunk.getPersistentDataContainer().get(chunkKey, PersistentDataType.INTEGER_ARRAY);
+        if (packed == null || packed.length == 0) {
+            return;
+        }
+
+        ChunkPos chunkPos = new ChunkPos(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+        Set<SignPos> signs = signsByChunk.computeIfAbsent(chunkPos, key -> new HashSet<>());
+
+        // Nur neu rendern, was noch nie gerendert wurde oder sich inzwischen geändert hat
+        for (int value : packed) {
+            SignPos pos = SignPos.unpack(chunkPos, value);
+            signs.add(pos);
+            if (stale.remove(pos) || !rendered.containsKey(pos)) {
+                pending.add(pos);
+            }
+        }
+    }
+
+    public void unloadChunk(Chunk chunk) {
+        Set<SignPos> signs = signsByChunk.remove(new ChunkPos(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ()));
+        if (signs == null) {
+            return;
+        }
+
+        // Die Abhängigkeiten bleiben bekannt, damit Änderungen bis zum nächsten Laden vermerkt werden
+        for (SignPos pos : signs) {
+            if (pending.remove(pos)) {
+                stale.add(pos);
+            }
+        }
+    }
+
+    @Override
+    public void onRefresh(Set<String> groups, Set<UUID> players) {
+        for (String group : groups) {
+            signsByGroup.getOrDefault(group, Set.of()).forEach(this::markChanged);
+        }
+        for (UUID player : players) {
+            signsByPlayer.getOrDefault(player, Set.of()).forEach(this::markChanged);
+        }
+    }
+
+    /**
+     * Ein Spieler ist unter diesem Namen beigetreten. Schilder, die den Namen bisher nicht
+     * auflösen konnten, sollen ihn jetzt anzeigen.
+     */
+    public void nameJoined(String name) {
+        signsByName.getOrDefault(name.toLowerCase(Locale.ROOT), Set.of()).forEach(this::markChanged);
+    }
+
+    private void markChanged(SignPos pos) {
+        if (signsByChunk.getOrDefault(pos.chunk(), Set.of()).contains(pos)) {
+            pending.add(pos);
+        } else {
+            stale.add(pos);
+        }
+    }
+
+    public int getTrackedCount() {
+        return rendered.size();
+    }
+
+    private void tick() {
+        Iterator<SignPos> iterator = pending.iterator();
+        int updated = 0;
+
+        while (iterator.hasNext() && updated < updatesPerTick) {
+            SignPos pos = iterator.next();
+            iterator.remove();
+
+            if (rerender(pos)) {
+                updated++;
+            }
+        }
+    }
+
+    private boolean rerender(SignPos pos) {
+        World world = Bukkit.getWorld(pos.world());
+        if (world == null || !world.isChunkLoaded(pos.x() >> 4, pos.z() >> 4)) {
+            // Wird beim nächsten Laden des Chunks nachgeholt
+            stale.add(pos);
+            return false;
+        }
+
+        Block block = world.getBlockAt(pos.x(), pos.y(), pos.z());
+        BlockState state = block.getState();
+        if (!(state instanceof Sign sign)) {
+            // Schild wurde ohne BlockBreakEvent entfernt (Explosion, WorldEdit, ...)
+            untrack(block);
+            return false;
+        }
+
+        PersistentDataContainer data = sign.getPersistentDataContainer();
+        Set<UUID> players = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        boolean changed = false;
+
+        for (Side side : Side.values()) {
+            String template = data.get(keyOf(side), PersistentDataType.STRING);
+            if (template == null) {
+                continue;
+            }
+
+            SignTemplate compiled = SignTemplate.compile(template.split("\n", -1));
+            SignRenderer.RenderedSign result = renderer.render(compiled);
+            if (!result.unresolved().isEmpty()) {
+                resolveLater(pos, result.unresolved());
+            }
+
+            SignSide signSide = sign.getSide(side);
+            Component[] lines = result.lines();
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i] != null && !lines[i].equals(signSide.line(i))) {
+                    signSide.line(i, lines[i]);
+                    changed = true;
+                }
+            }
+
+            players.addAll(result.players());
+            groups.addAll(result.groups());
+            for (String name : compiled.playerNames()) {
+                names.add(name.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        if (changed) {
+            sign.update();
+        }
+
+        unindex(pos);
+        index(pos, new Dependencies(players, groups, names));
+        stale.remove(pos);
+        return true;
+    }
+
+    // Namen im Hintergrund auflösen und das Schild danach erneut rendern
+    private void resolveLater(SignPos pos, Set<String> names) {
+        renderer.resolve(names).thenRun(() -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (rendered.containsKey(pos)) {
+                markChanged(pos);
+            }
+        })).exceptionally(e -> {
+            plugin.getLogger().warning("Failed to resolve player names " + names + ": " + e.getMessage());
+            return null;
+        });
+    }
+
+    private void index(SignPos pos, Dependencies dependencies) {
+        rendered.put(pos, dependencies);
+        for (UUID player : dependencies.players()) {
+            signsByPlayer.computeIfAbsent(player, key -> new HashSet<>()).add(pos);
+        }
+        for (String group : dependencies.groups()) {
+            signsByGroup.computeIfAbsent(group, key -> new HashSet<>()).add(pos);
+        }
+        for (String name : dependencies.names()) {
+            signsByName.computeIfAbsent(name, key -> new HashSet<>()).add(pos);
+        }
+    }
+
+    private void unindex(SignPos pos) {
+        Dependencies previous = rendered.remove(pos);
+        if (previous == null) {
+            return;
+        }
+
+        for (UUID player : previous.players()) {
+            removeFrom(signsByPlayer, player, pos);
+        }
+        for (String group : previous.groups()) {
+            removeFrom(signsByGroup, group, pos);
+        }
+        for (String name : previous.names()) {
+            removeFrom(signsByName, name, pos);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<SignPos>> index, K key, SignPos pos) {
+        Set<SignPos> signs = index.get(key);
+        if (signs != null && signs.remove(pos) && signs.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private void addToChunk(Chunk chunk, SignPos pos) {
+        signsByChunk.computeIfAbsent(pos.chunk(), key -> new HashSet<>()).add(pos);
+
+        PersistentDataContainer data = chunk.getPersistentDataContainer();
+        int[] packed = data.get(chunkKey, PersistentDataType.INTEGER_ARRAY);
+        List<Integer> values = new ArrayList<>();
+        if (packed != null) {
+            Arrays.stream(packed).forEach(values::add);
+        }
+        if (!values.contains(pos.pack())) {
+            values.add(pos.pack());
+            data.set(chunkKey, PersistentDataType.INTEGER_ARRAY, values.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private void removeFromChunk(Chunk chunk, SignPos pos) {
+        PersistentDataContainer data = chunk.getPersistentDataContainer();
+        int[] packed = data.get(chunkKey, PersistentDataType.INTEGER_ARRAY);
+        if (packed == null) {
+            return;
+        }
+
+        int[] remaining = Arrays.stream(packed).filter(value -> value != pos.pack()).toArray();
+        if (remaining.length == 0) {
+            data.remove(chunkKey);
+        } else if (remaining.length != packed.length) {
+            data.set(chunkKey, PersistentDataType.INTEGER_ARRAY, remaining);
+        }
+    }
+
+    private NamespacedKey keyOf(Side side) {
+        return side == Side.BACK ? backKey : frontKey;
+    }
+}
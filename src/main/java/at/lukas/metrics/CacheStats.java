@@ -0,0 +1,47 @@
+package at.lukas.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Treffer/Fehlschläge eines Caches. LongAdder, weil die Lookups von vielen Threads gleichzeitig kommen.
+ */
+public class CacheStats {
+    private final String name;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CacheStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+    }
+}
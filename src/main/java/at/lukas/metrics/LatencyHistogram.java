@@ -0,0 +1,129 @@
+package at.lukas.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Lock-freies Latenz-Histogramm mit logarithmischen Buckets (HDR-artig).
+ * <p>
+ * Jede Zweierpotenz ist in 8 Unter-Buckets geteilt, der Fehler eines Perzentils liegt also
+ * bei höchstens 12.5%. Aufzeichnen ist ein einzelnes atomares Inkrement ohne Allokation.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    public record Snapshot(long count, long p50, long p99, long max) {
+    }
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Misst die Laufzeit des Tasks. Für Datenbank-Aufrufe gedacht, die ohnehin ein Lambda erzeugen.
+     */
+    public <T> Supplier<T> time(Supplier<T> task) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    public Runnable time(Runnable task) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+
+        if (total == 0) {
+            return new Snapshot(0, 0, 0, 0);
+        }
+
+        long maxValue = max.get();
+        return new Snapshot(total,
+                Math.min(valueAt(copy, total, 0.50), maxValue),
+                Math.min(valueAt(copy, total, 0.99), maxValue),
+                maxValue);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    private static long valueAt(long[] counts, long total, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(total * percentile));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+
+        return upperBoundOf(counts.length - 1);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,50 @@
+package at.lukas.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sammelt Latenz-Histogramme und Cache-Statistiken unter einem Namen.
+ * <p>
+ * Die Lookups hier sind nur für den Aufbau gedacht - Aufrufer holen sich ihr Histogramm
+ * einmal und halten es in einem Feld.
+ */
+public class MetricsRegistry {
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, CacheStats> caches = new ConcurrentSkipListMap<>();
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public CacheStats cache(String name) {
+        return caches.computeIfAbsent(name, CacheStats::new);
+    }
+
+    public Collection<LatencyHistogram> getHistograms() {
+        return histograms.values();
+    }
+
+    public Collection<CacheStats> getCaches() {
+        return caches.values();
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        caches.values().forEach(CacheStats::reset);
+    }
+
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fµs", nanos / 1_000.0);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,68 @@
+package at.lukas.migration;
+
+import java.util.List;
+
+/**
+ * V1 (MySQL): Das Schema, wie es vor dem Migrationssystem per CREATE TABLE IF NOT EXISTS angelegt wurde.
+ * Auf bestehenden Installationen ist diese Migration deshalb ein No-Op.
+ */
+public final class BaselineMigration {
+    private BaselineMigration() {
+    }
+
+    public static Migration create() {
+        return new SqlMigration(1, "Baseline schema", List.of(
+                """
+                CREATE TABLE IF NOT EXISTS group_data (
+                    id INT AUTO_INCREMENT PRIMARY KEY,
+                    name VARCHAR(36) NOT NULL UNIQUE,
+                    prefix VARCHAR(64)
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS player_groups (
+                    uuid CHAR(36) NOT NULL PRIMARY KEY,
+                    group_id INT NOT NULL,
+                    expiry DATETIME NULL,
+                    assigned_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    CONSTRAINT fk_player_groups_group
+                        FOREIGN KEY (group_id)
+                        REFERENCES group_data(id)
+                        ON DELETE CASCADE,
+                    INDEX idx_player_groups_group (group_id),
+                    INDEX idx_player_groups_expiry (expiry)
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS group_permissions (
+                    id INT AUTO_INCREMENT PRIMARY KEY,
+                    group_id INT NOT NULL,
+                    permission VARCHAR(255) NOT NULL,
+                    CONSTRAINT fk_group_permissions_group
+                        FOREIGN KEY (group_id)
+                        REFERENCES group_data(id)
+                        ON DELETE CASCADE,
+                    UNIQUE KEY unique_group_permission (group_id, permission),
+                    INDEX idx_group_permissions_group (group_id)
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS group_change_log (
+                    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    server_id CHAR(36) NOT NULL,
+                    change_type VARCHAR(32) NOT NULL,
+                    group_name VARCHAR(36) NULL,
+                    player_uuid CHAR(36) NULL,
+                    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    INDEX idx_group_change_log_created (created_at)
+                )
+                """,
+                """
+                INSERT IGNORE INTO group_data (name, prefix) VALUES
+                ('default', '&7[Member]'),
+                ('vip', '&6[VIP]'),
+                ('admin', '&c[Admin]')
+                """
+        ));
+    }
+}
@@ -0,0 +1,164 @@
+package at.lukas.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * V2 (MySQL): Stellt UUID-Spalten von CHAR(36) auf BINARY(16) um.
+ * <p>
+ * Die neue Spalte wird zuerst daneben angelegt und in Chunks entlang des Primärschlüssels befüllt,
+ * damit keine lange Tabellensperre entsteht, während der Server läuft. Jeder Chunk liest also nur
+ * seine eigenen Zeilen. Nur der letzte Durchlauf (Zeilen, die andere Server inzwischen geschrieben
+ * haben) und der Tausch der Spalten laufen unter LOCK TABLES, damit dazwischen keine Zeile ohne
+ * konvertierte UUID entsteht. Jeder Schritt prüft den aktuellen Zustand, ein Abbruch kann also
+ * einfach wiederholt werden.
+ */
+public class BinaryUuidMigration implements Migration {
+    static final int CHUNK_SIZE = 5000;
+
+    // key: Primärschlüssel, entlang dessen befüllt wird; keyFloor liegt unter jedem vorhandenen Wert
+    private record UuidColumn(String table, String column, String key, Object keyFloor, boolean primaryKey) {
+    }
+
+    private static final List<UuidColumn> COLUMNS = List.of(
+            new UuidColumn("player_groups", "uuid", "uuid", "", true),
+            new UuidColumn("group_change_log", "player_uuid", "seq", 0L, false)
+    );
+
+    @Override
+    public int version() {
+        return 2;
+    }
+
+    @Override
+    public String description() {
+        return "Store UUIDs as BINARY(16)";
+    }
+
+    @Override
+    public String checksum() {
+        // Inhalt ist Code statt SQL-Liste - bei Änderungen am resultierenden Schema hier hochzählen
+        return "binary-uuid-1";
+    }
+
+    @Override
+    public void migrate(Connection conn, Logger logger) throws SQLException {
+        for (UuidColumn column : COLUMNS) {
+            convert(conn, column, logger);
+        }
+    }
+
+    private void convert(Connection conn, UuidColumn target, Logger logger) throws SQLException {
+        String table = target.table();
+        String column = target.column();
+        String tempColumn = column + "_bin";
+
+        String type = columnType(conn, table, column);
+        if ("binary".equalsIgnoreCase(type)) {
+            return;
+        }
+
+        if (columnType(conn, table, tempColumn) == null) {
+            execute(conn, "ALTER TABLE " + table + " ADD COLUMN " + tempColumn + " BINARY(16) NULL");
+        }
+
+        long converted = fillByKeyRange(conn, target, tempColumn);
+        logger.info("Converted " + converted + " UUIDs in " + table + "." + column);
+
+        execute(conn, "LOCK TABLES " + table + " WRITE");
+        try {
+            // Zeilen, die während des Befüllens von anderen Servern geschrieben wurden, mitnehmen
+            fillRemaining(conn, table, column, tempColumn);
+
+            if (target.primaryKey()) {
+                execute(conn, "ALTER TABLE " + table
+                        + " DROP PRIMARY KEY,"
+                        + " DROP COLUMN " + column + ","
+                        + " CHANGE COLUMN " + tempColumn + " " + column + " BINARY(16) NOT NULL FIRST,"
+                        + " ADD PRIMARY KEY (" + column + ")");
+            } else {
+                execute(conn, "ALTER TABLE " + table
+                        + " DROP COLUMN " + column + ","
+                        + " CHANGE COLUMN " + tempColumn + " " + column + " BINARY(16) NULL");
+            }
+        } finally {
+            execute(conn, "UNLOCK TABLES");
+        }
+    }
+
+    private long fillByKeyRange(Connection conn, UuidColumn target, String tempColumn) throws SQLException {
+        String table = target.table();
+        String key = target.key();
+        String column = target.column();
+
+        String boundQuery = "SELECT " + key + " FROM " + table
+                + " WHERE " + key + " > ?"
+                + " ORDER BY " + key
+                + " LIMIT 1 OFFSET " + (CHUNK_SIZE - 1);
+        String updateQuery = "UPDATE " + table
+                + " SET " + tempColumn + " = UNHEX(REPLACE(" + column + ", '-', ''))"
+                + " WHERE " + key + " > ? AND " + key + " <= ?"
+                + " AND " + tempColumn + " IS NULL AND " + column + " IS NOT NULL";
+
+        long total = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(true);
+
+        try (PreparedStatement bound = conn.prepareStatement(boundQuery);
+             PreparedStatement update = conn.prepareStatement(updateQuery)) {
+            Object lower = target.keyFloor();
+            while (true) {
+                Object upper;
+                bound.setObject(1, lower);
+                try (ResultSet rs = bound.executeQuery()) {
+                    upper = rs.next() ? rs.getObject(1) : null;
+                }
+
+                if (upper == null) {
+                    // Der letzte, unvollständige Chunk läuft in fillRemaining unter der Tabellensperre
+                    return total;
+                }
+
+                update.setObject(1, lower);
+                update.setObject(2, upper);
+                total += update.executeUpdate();
+                lower = upper;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void fillRemaining(Connection conn, String table, String column, String tempColumn) throws SQLException {
+        execute(conn, "UPDATE " + table
+                + " SET " + tempColumn + " = UNHEX(REPLACE(" + column + ", '-', ''))"
+                + " WHERE " + tempColumn + " IS NULL AND " + column + " IS NOT NULL");
+    }
+
+    private String columnType(Connection conn, String table, String column) throws SQLException {
+        String query = """
+                SELECT DATA_TYPE FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?
+                """;
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("DATA_TYPE") : null;
+            }
+        }
+    }
+
+    private void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package at.lukas.migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Eine versionierte Schema-Änderung.
+ * <p>
+ * Migrationen müssen idempotent sein: MySQL committet DDL sofort, eine abgebrochene Migration
+ * wird beim nächsten Start deshalb einfach erneut ausgeführt.
+ */
+public interface Migration {
+    int version();
+
+    String description();
+
+    /**
+     * Fingerabdruck des Inhalts. Ändert sich eine bereits angewendete Migration, bricht der Start ab.
+     */
+    String checksum();
+
+    void migrate(Connection conn, Logger logger) throws SQLException;
+}
@@ -0,0 +1,123 @@
+package at.lukas.migration;
+
+import at.lukas.storage.Storage;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Spielt ausstehende Migrationen der Reihe nach ein und merkt sie sich in schema_version.
+ * <p>
+ * Mehrere Server können gleichzeitig starten, deshalb läuft alles unter der Schema-Sperre
+ * des Storage-Backends. Wurde eine bereits angewendete Migration nachträglich verändert, bricht der
+ * Start ab statt das Schema stillschweigend auseinanderlaufen zu lassen.
+ */
+public class MigrationRunner {
+    private final DataSource dataSource;
+    private final Storage storage;
+    private final Logger logger;
+
+    public MigrationRunner(DataSource dataSource, Storage storage, Logger logger) {
+        this.dataSource = dataSource;
+        this.storage = storage;
+        this.logger = logger;
+    }
+
+    public int migrate() throws SQLException {
+        List<Migration> ordered = storage.getMigrations().stream()
+                .sorted(Comparator.comparingInt(Migration::version))
+                .toList();
+
+        try (Connection conn = dataSource.getConnection()) {
+            storage.lockSchema(conn);
+            try {
+                createVersionTable(conn);
+
+                Map<Integer, String> applied = loadAppliedVersions(conn);
+                int count = 0;
+
+                for (Migration migration : ordered) {
+                    String checksum = migration.checksum();
+                    String appliedChecksum = applied.get(migration.version());
+
+                    if (appliedChecksum != null) {
+                        if (!appliedChecksum.equals(checksum)) {
+                            throw new SQLException("Migration V" + migration.version() + " (" + migration.description()
+                                    + ") was modified after it was applied: expected checksum "
+                                    + appliedChecksum + ", found " + checksum);
+                        }
+                        continue;
+                    }
+
+                    logger.info("Applying schema migration V" + migration.version() + ": " + migration.description());
+                    long start = System.currentTimeMillis();
+
+                    migration.migrate(conn, logger);
+                    recordVersion(conn, migration, checksum);
+                    count++;
+
+                    logger.info("Schema migration V" + migration.version() + " finished in "
+                            + (System.currentTimeMillis() - start) + "ms");
+                }
+
+                return count;
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    private void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INT NOT NULL PRIMARY KEY,
+                        description VARCHAR(200) NOT NULL,
+                        checksum VARCHAR(16) NOT NULL,
+                        installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """);
+        }
+    }
+
+    private Map<Integer, String> loadAppliedVersions(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+
+        return applied;
+    }
+
+    private void recordVersion(Connection conn, Migration migration, String checksum) throws SQLException {
+        String query = "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, migration.version());
+            stmt.setString(2, migration.description());
+            stmt.setString(3, checksum);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void releaseLock(Connection conn) {
+        try {
+            storage.unlockSchema(conn);
+        } catch (SQLException e) {
+            logger.warning("Failed to release schema migration lock: " + e.getMessage());
+        }
+    }
+}
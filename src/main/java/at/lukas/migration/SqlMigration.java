@@ -0,0 +1,53 @@
+package at.lukas.migration;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Migration, die aus einer festen Liste von SQL-Statements besteht.
+ */
+public class SqlMigration implements Migration {
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    public SqlMigration(int version, String description, List<String> statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+    }
+
+    @Override
+    public int version() {
+        return version;
+    }
+
+    @Override
+    public String description() {
+        return description;
+    }
+
+    @Override
+    public String checksum() {
+        CRC32 crc = new CRC32();
+        for (String statement : statements) {
+            // Whitespace ignorieren, damit reine Formatierung keinen Abbruch auslöst
+            crc.update(statement.replaceAll("\\s+", " ").trim().getBytes(StandardCharsets.UTF_8));
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    @Override
+    public void migrate(Connection conn, Logger logger) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : statements) {
+                stmt.execute(statement);
+            }
+        }
+    }
+}
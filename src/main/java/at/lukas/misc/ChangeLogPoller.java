@@ -0,0 +1,67 @@
+package at.lukas.misc;
+
+import at.lukas.CustomGroupSystem;
+import at.lukas.manager.DatabaseManager;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fragt regelmäßig das Änderungsprotokoll ab und wendet Änderungen anderer Server an.
+ * Kosten pro Poll hängen nur von der Anzahl neuer Änderungen ab, nicht von der Tabellengröße.
+ */
+public class ChangeLogPoller {
+    private static final int POLL_LIMIT = 500;
+    private static final long PURGE_INTERVAL_MILLIS = 60 * 60 * 1000L;
+
+    private final CustomGroupSystem plugin;
+    private final DatabaseManager dbManager;
+    private final RefreshScheduler refreshScheduler;
+    private final long retentionHours;
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    private BukkitTask task;
+    private long lastPurge;
+
+    public ChangeLogPoller(CustomGroupSystem plugin, DatabaseManager dbManager, RefreshScheduler refreshScheduler, long retentionHours) {
+        this.plugin = plugin;
+        this.dbManager = dbManager;
+        this.refreshScheduler = refreshScheduler;
+        this.retentionHours = retentionHours;
+    }
+
+    public void start(long intervalTicks) {
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::poll, intervalTicks, intervalTicks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    private void poll() {
+        // Langsame Datenbank: keine überlappenden Polls
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        dbManager.pollRemoteChanges(POLL_LIMIT).thenAccept(invalidation -> {
+            invalidation.players().forEach(refreshScheduler::markPlayer);
+            invalidation.groups().forEach(refreshScheduler::markGroup);
+        }).exceptionally(e -> {
+            plugin.getLogger().warning("Error polling change log: " + e.getMessage());
+            return null;
+        }).whenComplete((ignored, e) -> polling.set(false));
+
+        long now = System.currentTimeMillis();
+        if (now - lastPurge > PURGE_INTERVAL_MILLIS) {
+            lastPurge = now;
+            dbManager.purgeChangeLog(retentionHours).exceptionally(e -> {
+                plugin.getLogger().warning("Error purging change log: " + e.getMessage());
+                return null;
+            });
+        }
+    }
+}
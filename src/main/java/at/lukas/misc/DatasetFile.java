@@ -0,0 +1,285 @@
+package at.lukas.misc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Binärformat für /gs export und /gs import.
+ * <p>
+ * Aufbau:
+ * - Kopf: "CGSD" + Formatversion (short)
+ * - Einträge, je ein Tag-Byte und danach die Felder:
+ * GROUP (id, name, prefix), PARENT (group_id, parent_id), PERMISSION (group_id, permission),
+ * PLAYER (uuid, group_id, expiry)
+ * - END mit der Anzahl der Einträge pro Art, damit abgeschnittene Dateien auffallen
+ * <p>
+ * Version 1 kannte noch keine PARENT-Einträge (END ohne deren Anzahl) und wird weiterhin gelesen.
+ * <p>
+ * Gruppen stehen vor allen Einträgen, die auf sie verweisen. Strings sind UTF-8 mit
+ * vorangestellter Länge (unsigned short), expiry sind Sekunden seit Epoch oder
+ * {@link #PERMANENT}. Gelesen und geschrieben wird über einen festen Puffer, der Speicherbedarf
+ * hängt also nicht von der Größe der Datei ab.
+ */
+public final class DatasetFile {
+    public static final int VERSION = 2;
+    public static final long PERMANENT = Long.MIN_VALUE;
+
+    private static final byte[] MAGIC = {'C', 'G', 'S', 'D'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Deutlich mehr als jede Spalte hergibt, muss aber zusammen mit dem Rest eines Eintrags in den Puffer passen
+    private static final int MAX_STRING_BYTES = 8 * 1024;
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_GROUP = 1;
+    private static final byte TAG_PERMISSION = 2;
+    private static final byte TAG_PLAYER = 3;
+    private static final byte TAG_PARENT = 4;
+
+    public sealed interface Entry permits GroupEntry, ParentEntry, PermissionEntry, PlayerEntry {
+    }
+
+    public record GroupEntry(int id, String name, String prefix) implements Entry {
+    }
+
+    public record ParentEntry(int groupId, int parentId) implements Entry {
+    }
+
+    public record PermissionEntry(int groupId, String permission) implements Entry {
+    }
+
+    public record PlayerEntry(UUID uuid, int groupId, long expirySeconds) implements Entry {
+    }
+
+    public record Counts(long groups, long parents, long permissions, long players) {
+    }
+
+    private DatasetFile() {
+    }
+
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long groups;
+        private long parents;
+        private long permissions;
+        private long players;
+
+        public Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            ensure(MAGIC.length + 2);
+            buffer.put(MAGIC).putShort((short) VERSION);
+        }
+
+        public void writeGroup(int id, String name, String prefix) throws IOException {
+            byte[] nameBytes = encode(name);
+            byte[] prefixBytes = prefix != null ? encode(prefix) : null;
+
+            ensure(1 + 4 + 2 + nameBytes.length + 1 + (prefixBytes != null ? 2 + prefixBytes.length : 0));
+            buffer.put(TAG_GROUP).putInt(id);
+            putString(nameBytes);
+            buffer.put((byte) (prefixBytes != null ? 1 : 0));
+            if (prefixBytes != null) {
+                putString(prefixBytes);
+            }
+            groups++;
+        }
+
+        public void writeParent(int groupId, int parentId) throws IOException {
+            ensure(1 + 4 + 4);
+            buffer.put(TAG_PARENT).putInt(groupId).putInt(parentId);
+            parents++;
+        }
+
+        public void writePermission(int groupId, String permission) throws IOException {
+            byte[] permissionBytes = encode(permission);
+
+            ensure(1 + 4 + 2 + permissionBytes.length);
+            buffer.put(TAG_PERMISSION).putInt(groupId);
+            putString(permissionBytes);
+            permissions++;
+        }
+
+        public void writePlayer(UUID uuid, int groupId, long expirySeconds) throws IOException {
+            ensure(1 + 16 + 4 + 8);
+            buffer.put(TAG_PLAYER)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .putInt(groupId)
+                    .putLong(expirySeconds);
+            players++;
+        }
+
+        /**
+         * Schreibt das Ende-Kennzeichen. Ohne finish() gilt die Datei beim Lesen als abgeschnitten.
+         */
+        public Counts finish() throws IOException {
+            ensure(1 + 4 * 8);
+            buffer.put(TAG_END).putLong(groups).putLong(parents).putLong(permissions).putLong(players);
+            flush();
+            channel.force(false);
+            return new Counts(groups, parents, permissions, players);
+        }
+
+        private void putString(byte[] bytes) {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private static byte[] encode(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_BYTES) {
+                throw new IOException("String too long for dataset file: " + value.substring(0, 32) + "...");
+            }
+            return bytes;
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final int version;
+        private long groups;
+        private long parents;
+        private long permissions;
+        private long players;
+        private Counts counts;
+
+        public Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip();
+
+            require(MAGIC.length + 2);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a group system dataset file");
+            }
+
+            version = buffer.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported dataset file version " + version + " (expected at most " + VERSION + ")");
+            }
+        }
+
+        /**
+         * Nächster Eintrag oder null, wenn das Ende-Kennzeichen erreicht ist.
+         */
+        public Entry next() throws IOException {
+            if (counts != null) {
+                return null;
+            }
+
+            require(1);
+            byte tag = buffer.get();
+            switch (tag) {
+                case TAG_GROUP -> {
+                    require(4);
+                    int id = buffer.getInt();
+                    String name = readString();
+                    require(1);
+                    String prefix = buffer.get() != 0 ? readString() : null;
+                    groups++;
+                    return new GroupEntry(id, name, prefix);
+                }
+                case TAG_PARENT -> {
+                    require(4 + 4);
+                    int groupId = buffer.getInt();
+                    int parentId = buffer.getInt();
+                    parents++;
+                    return new ParentEntry(groupId, parentId);
+                }
+                case TAG_PERMISSION -> {
+                    require(4);
+                    int groupId = buffer.getInt();
+                    String permission = readString();
+                    permissions++;
+                    return new PermissionEntry(groupId, permission);
+                }
+                case TAG_PLAYER -> {
+                    require(16 + 4 + 8);
+                    UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                    int groupId = buffer.getInt();
+                    long expirySeconds = buffer.getLong();
+                    players++;
+                    return new PlayerEntry(uuid, groupId, expirySeconds);
+                }
+                case TAG_END -> {
+                    Counts expected;
+                    if (version == 1) {
+                        require(3 * 8);
+                        expected = new Counts(buffer.getLong(), 0, buffer.getLong(), buffer.getLong());
+                    } else {
+                        require(4 * 8);
+                        expected = new Counts(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+                    }
+                    Counts actual = new Counts(groups, parents, permissions, players);
+                    if (!expected.equals(actual)) {
+                        throw new IOException("Dataset file is corrupt: expected " + expected + " but read " + actual);
+                    }
+                    counts = actual;
+                    return null;
+                }
+                default -> throw new IOException("Dataset file is corrupt: unknown entry type " + tag);
+            }
+        }
+
+        public Counts getCounts() {
+            return counts;
+        }
+
+        private String readString() throws IOException {
+            require(2);
+            int length = Short.toUnsignedInt(buffer.getShort());
+            require(length);
+
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Dataset file is truncated");
+                }
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package at.lukas.misc;
+
+import java.util.*;
+
+/**
+ * In-Memory Index der demnächst ablaufenden Gruppen.
+ * <p>
+ * Hält nur Einträge bis zum aktuellen Horizont (Look-Ahead-Fenster), damit der
+ * Index auch bei sehr vielen temporären Gruppen klein bleibt. Alles dahinter
+ * wird beim nächsten Nachladen des Fensters aus der Datenbank geholt.
+ */
+public class ExpiryIndex {
+    private final NavigableSet<Entry> deadlines = new TreeSet<>();
+    private final Map<UUID, Long> expiryByPlayer = new HashMap<>();
+    private long horizon;
+    private Runnable onEarliestChanged = () -> {};
+
+    private record Entry(long expiry, UUID uuid) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int cmp = Long.compare(expiry, other.expiry);
+            return cmp != 0 ? cmp : uuid.compareTo(other.uuid);
+        }
+    }
+
+    public synchronized void setOnEarliestChanged(Runnable onEarliestChanged) {
+        this.onEarliestChanged = onEarliestChanged;
+    }
+
+    public synchronized void setHorizon(long horizon) {
+        this.horizon = horizon;
+    }
+
+    public synchronized long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Trägt einen Ablaufzeitpunkt ein oder ersetzt den bisherigen.
+     * Zeitpunkte hinter dem Horizont werden ignoriert (und ein alter Eintrag entfernt).
+     */
+    public void schedule(UUID uuid, long expiryMillis) {
+        Runnable callback;
+        synchronized (this) {
+            Long before = earliest();
+            removeInternal(uuid);
+
+            if (expiryMillis <= horizon) {
+                deadlines.add(new Entry(expiryMillis, uuid));
+                expiryByPlayer.put(uuid, expiryMillis);
+            }
+
+            if (Objects.equals(before, earliest())) {
+                return;
+            }
+            callback = onEarliestChanged;
+        }
+        callback.run();
+    }
+
+    /**
+     * Trägt einen Zeitpunkt nur ein, wenn für den Spieler noch nichts ansteht, unabhängig vom Horizont.
+     * Für Wiederholungen, die einen inzwischen neu geplanten Ablauf nicht überschreiben dürfen.
+     */
+    public void scheduleIfAbsent(UUID uuid, long expiryMillis) {
+        Runnable callback;
+        synchronized (this) {
+            if (expiryByPlayer.containsKey(uuid)) {
+                return;
+            }
+
+            Long before = earliest();
+            deadlines.add(new Entry(expiryMillis, uuid));
+            expiryByPlayer.put(uuid, expiryMillis);
+
+            if (Objects.equals(before, earliest())) {
+                return;
+            }
+            callback = onEarliestChanged;
+        }
+        callback.run();
+    }
+
+    public synchronized void remove(UUID uuid) {
+        // Ein entfernter frühester Eintrag muss niemanden wecken - der Scheduler wacht höchstens umsonst auf
+        removeInternal(uuid);
+    }
+
+    /**
+     * Entnimmt alle Einträge, deren Zeitpunkt erreicht ist.
+     */
+    public synchronized List<UUID> pollDue(long now) {
+        List<UUID> due = new ArrayList<>();
+        while (!deadlines.isEmpty() && deadlines.first().expiry() <= now) {
+            Entry entry = deadlines.pollFirst();
+            expiryByPlayer.remove(entry.uuid());
+            due.add(entry.uuid());
+        }
+        return due;
+    }
+
+    /**
+     * @return frühester Ablaufzeitpunkt oder null, wenn nichts ansteht
+     */
+    public synchronized Long nextDeadline() {
+        return earliest();
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    public synchronized void clear() {
+        deadlines.clear();
+        expiryByPlayer.clear();
+    }
+
+    private Long earliest() {
+        return deadlines.isEmpty() ? null : deadlines.first().expiry();
+    }
+
+    private void removeInternal(UUID uuid) {
+        Long previous = expiryByPlayer.remove(uuid);
+        if (previous != null) {
+            deadlines.remove(new Entry(previous, uuid));
+        }
+    }
+}
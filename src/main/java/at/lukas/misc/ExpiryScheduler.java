@@ -0,0 +1,149 @@
+package at.lukas.misc;
+
+import at.lukas.CustomGroupSystem;
+import at.lukas.manager.DatabaseManager;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Setzt abgelaufene Gruppen genau dann zurück, wenn der nächste Ablaufzeitpunkt erreicht ist.
+ * <p>
+ * Statt die Datenbank regelmäßig abzufragen, wird das Look-Ahead-Fenster einmal pro
+ * Fensterlänge nachgeladen und dazwischen nur noch auf den frühesten Eintrag im
+ * {@link ExpiryIndex} gewartet.
+ * <p>
+ * Fällige Spieler, die die Datenbank noch nicht als abgelaufen sieht (Uhr der Datenbank geht nach,
+ * CURRENT_TIMESTAMP ist auf Sekunden gerundet), werden kurz darauf erneut versucht statt bis zum
+ * nächsten Nachladen des Fensters liegen zu bleiben.
+ */
+public class ExpiryScheduler {
+    private static final long MILLIS_PER_TICK = 50L;
+    private static final long RETRY_DELAY_MILLIS = 1_000L;
+    private static final long MAX_RETRY_MILLIS = 60_000L;
+
+    private final CustomGroupSystem plugin;
+    private final DatabaseManager dbManager;
+    private final RefreshScheduler refreshScheduler;
+    private final ExpiryIndex expiryIndex;
+    private final long lookAheadMillis;
+    // Spieler, deren Reset wiederholt wird, mit dem Zeitpunkt, ab dem sie fällig waren
+    private final Map<UUID, Long> retryingSince = new ConcurrentHashMap<>();
+
+    private BukkitTask refillTask;
+    private BukkitTask wakeUpTask;
+    private long armedDeadline = Long.MAX_VALUE;
+    private boolean stopped;
+
+    public ExpiryScheduler(CustomGroupSystem plugin, DatabaseManager dbManager, RefreshScheduler refreshScheduler, long lookAheadMillis) {
+        this.plugin = plugin;
+        this.dbManager = dbManager;
+        this.refreshScheduler = refreshScheduler;
+        this.expiryIndex = dbManager.getExpiryIndex();
+        this.lookAheadMillis = lookAheadMillis;
+    }
+
+    public void start() {
+        expiryIndex.setOnEarliestChanged(this::arm);
+
+        long periodTicks = Math.max(1L, lookAheadMillis / MILLIS_PER_TICK);
+        refillTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::refillWindow, 0L, periodTicks);
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        expiryIndex.setOnEarliestChanged(() -> {});
+
+        if (refillTask != null) {
+            refillTask.cancel();
+        }
+        if (wakeUpTask != null) {
+            wakeUpTask.cancel();
+        }
+    }
+
+    private void refillWindow() {
+        // Das Fenster überlappt mit dem nächsten Nachladen, damit an der Grenze nichts verloren geht
+        long horizon = System.currentTimeMillis() + lookAheadMillis * 2;
+
+        dbManager.findUpcomingExpiries(horizon).thenAccept(upcoming -> {
+            expiryIndex.setHorizon(horizon);
+            upcoming.forEach(expiryIndex::schedule);
+            arm();
+        }).exceptionally(e -> {
+            plugin.getLogger().warning("Error loading upcoming expiries: " + e.getMessage());
+            return null;
+        });
+    }
+
+    private synchronized void arm() {
+        if (stopped) {
+            return;
+        }
+
+        Long next = expiryIndex.nextDeadline();
+        if (next == null) {
+            return;
+        }
+
+        if (wakeUpTask != null && !wakeUpTask.isCancelled() && armedDeadline <= next) {
+            return;
+        }
+
+        if (wakeUpTask != null) {
+            wakeUpTask.cancel();
+        }
+
+        long delayMillis = Math.max(0L, next - System.currentTimeMillis());
+        long delayTicks = Math.max(1L, (delayMillis + MILLIS_PER_TICK - 1) / MILLIS_PER_TICK);
+
+        armedDeadline = next;
+        wakeUpTask = Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, this::onDeadline, delayTicks);
+    }
+
+    private void onDeadline() {
+        synchronized (this) {
+            wakeUpTask = null;
+            armedDeadline = Long.MAX_VALUE;
+        }
+
+        long now = System.currentTimeMillis();
+        List<UUID> due = expiryIndex.pollDue(now);
+
+        dbManager.removeExpiredGroups().thenAccept(resetPlayers -> {
+            if (!resetPlayers.isEmpty()) {
+                plugin.getLogger().info("Removed " + resetPlayers.size() + " expired group(s)");
+
+                resetPlayers.forEach(refreshScheduler::markPlayer);
+            }
+            retryUnconfirmed(due, resetPlayers, now);
+        }).exceptionally(e -> {
+            plugin.getLogger().warning("Error checking expired groups: " + e.getMessage());
+            retryUnconfirmed(due, Set.of(), now);
+            return null;
+        }).whenComplete((ignored, e) -> arm());
+    }
+
+    private void retryUnconfirmed(List<UUID> due, Set<UUID> resetPlayers, long now) {
+        for (UUID uuid : due) {
+            if (resetPlayers.contains(uuid)) {
+                retryingSince.remove(uuid);
+                continue;
+            }
+
+            long since = retryingSince.computeIfAbsent(uuid, key -> now);
+            if (now - since < MAX_RETRY_MILLIS) {
+                // Wurde der Spieler inzwischen neu geplant, gilt dieser Zeitpunkt
+                expiryIndex.scheduleIfAbsent(uuid, System.currentTimeMillis() + RETRY_DELAY_MILLIS);
+            } else {
+                // Ist die Zeile wirklich abgelaufen, lädt das nächste Nachladen des Fensters sie wieder
+                retryingSince.remove(uuid);
+            }
+        }
+    }
+}
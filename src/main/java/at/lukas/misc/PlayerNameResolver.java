@@ -0,0 +1,164 @@
+package at.lukas.misc;
+
+import at.lukas.manager.DatabaseManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Löst Spielernamen über die eigene Tabelle player_names zu UUIDs auf, ohne Mojang zu fragen.
+ * Fehlt ein Name dort, fällt {@link DatabaseManager#findPlayerUuid} auf den User-Cache des Servers zurück.
+ * <p>
+ * Online-Spieler stehen fest im Speicher, offline Namen in einem LRU-Cache mit höchstens
+ * names.cache-size Einträgen. {@link #getCached} schaut nur dort nach, alles andere lädt
+ * {@link #resolve} asynchron aus der Datenbank. Gleichzeitige Anfragen für denselben Namen
+ * teilen sich eine Abfrage.
+ * <p>
+ * "Nicht gefunden" wird nur {@value #UNKNOWN_TTL_MILLIS} ms gemerkt. Mit sync.enabled kann ein
+ * Spieler zuerst auf einem anderen Server beitreten und wäre sonst hier bis zur Verdrängung unbekannt.
+ */
+public class PlayerNameResolver {
+    /**
+     * Ergebnis für Namen, die es nicht gibt bzw. die nie auf dem Server waren.
+     */
+    public static final UUID UNKNOWN = new UUID(0L, 0L);
+
+    private static final long UNKNOWN_TTL_MILLIS = 30_000L;
+
+    private record Cached(UUID uuid, long expiresAt) {
+    }
+
+    private final DatabaseManager dbManager;
+    private final Map<String, UUID> online = new ConcurrentHashMap<>();
+    private final Map<String, Cached> offline;
+    private final Map<String, CompletableFuture<UUID>> inFlight = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> joinListeners = new CopyOnWriteArrayList<>();
+
+    public PlayerNameResolver(DatabaseManager dbManager, int maxOfflineEntries) {
+        this.dbManager = dbManager;
+
+        int capacity = Math.max(1, maxOfflineEntries);
+        this.offline = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public void playerJoined(UUID uuid, String name) {
+        String key = key(name);
+        online.put(key, uuid);
+        synchronized (offline) {
+            offline.remove(key);
+        }
+
+        for (Consumer<String> listener : joinListeners) {
+            listener.accept(name);
+        }
+    }
+
+    /**
+     * Wird bei jedem {@link #playerJoined} mit dem Namen aufgerufen, z.B. damit Schilder einen
+     * bisher unbekannten Namen nachziehen.
+     */
+    public void addJoinListener(Consumer<String> listener) {
+        joinListeners.add(listener);
+    }
+
+    public void playerQuit(UUID uuid, String name) {
+        String key = key(name);
+        if (online.remove(key, uuid)) {
+            cacheOffline(key, uuid);
+        }
+    }
+
+    /**
+     * UUID, {@link #UNKNOWN} oder null, wenn der Name erst über {@link #resolve} geladen werden muss.
+     */
+    public UUID getCached(String name) {
+        String key = key(name);
+
+        UUID uuid = online.get(key);
+        if (uuid != null) {
+            return uuid;
+        }
+
+        synchronized (offline) {
+            Cached cached = offline.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt() < System.currentTimeMillis()) {
+                offline.remove(key);
+                return null;
+            }
+            return cached.uuid();
+        }
+    }
+
+    public CompletableFuture<UUID> resolve(String name) {
+        UUID cached = getCached(name);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        String key = key(name);
+        CompletableFuture<UUID> created = new CompletableFuture<>();
+        CompletableFuture<UUID> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        dbManager.findPlayerUuid(name).whenComplete((found, error) -> {
+            inFlight.remove(key);
+            if (error != null) {
+                created.completeExceptionally(error);
+                return;
+            }
+
+            UUID uuid = found != null ? found : UNKNOWN;
+            // Ist der Spieler inzwischen online, gilt der Eintrag aus dem Join
+            if (!online.containsKey(key)) {
+                cacheOffline(key, uuid);
+            }
+            created.complete(uuid);
+        });
+
+        return created;
+    }
+
+    public CompletableFuture<Void> resolveAll(Collection<String> names) {
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for (String name : names) {
+            futures.add(resolve(name));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    public int getCachedCount() {
+        synchronized (offline) {
+            return online.size() + offline.size();
+        }
+    }
+
+    private void cacheOffline(String key, UUID uuid) {
+        long expiresAt = UNKNOWN.equals(uuid) ? System.currentTimeMillis() + UNKNOWN_TTL_MILLIS : Long.MAX_VALUE;
+        synchronized (offline) {
+            offline.put(key, new Cached(uuid, expiresAt));
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,180 @@
+package at.lukas.misc;
+
+import at.lukas.manager.DatabaseManager;
+import at.lukas.manager.PermissionManager;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sammelt geänderte Gruppen und Spieler und aktualisiert Prefix und Permissions gebündelt
+ * einmal pro Tick. Weitere Abhängige (z.B. Schilder) hängen sich über {@link Listener} an.
+ * <p>
+ * Mehrere Änderungen an derselben Gruppe innerhalb eines Ticks führen so nur zu einer
+ * Neuberechnung pro betroffenem Spieler. Pro Tick wird höchstens refresh.tick-budget-ms
+ * gearbeitet, der Rest bleibt für den nächsten Tick liegen.
+ */
+public class RefreshScheduler {
+    private final Plugin plugin;
+    private final DatabaseManager dbManager;
+    private final PermissionManager permissionManager;
+    private final long budgetNanos;
+
+    // Werden von beliebigen Threads befüllt
+    private final Set<String> dirtyGroups = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean allDirty = new AtomicBoolean();
+
+    // Nur auf dem Main-Thread
+    private final ArrayDeque<UUID> pending = new ArrayDeque<>();
+    private final Set<UUID> pendingSet = new HashSet<>();
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private BukkitTask task;
+
+    /**
+     * Wird einmal pro Tick mit allen seitdem geänderten Gruppen und Spielern aufgerufen,
+     * auf dem Main-Thread.
+     */
+    public interface Listener {
+        void onRefresh(Set<String> groups, Set<UUID> players);
+    }
+
+    public RefreshScheduler(Plugin plugin, DatabaseManager dbManager, PermissionManager permissionManager, long budgetMillis) {
+        this.plugin = plugin;
+        this.dbManager = dbManager;
+        this.permissionManager = permissionManager;
+        this.budgetNanos = Math.max(1L, budgetMillis) * 1_000_000L;
+    }
+
+    public void start() {
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void markGroup(String groupName) {
+        dirtyGroups.add(groupName.toLowerCase(Locale.ROOT));
+    }
+
+    public void markPlayer(UUID uuid) {
+        dirtyPlayers.add(uuid);
+    }
+
+    public void markAll() {
+        allDirty.set(true);
+    }
+
+    public int getPendingCount() {
+        return pending.size() + dirtyPlayers.size();
+    }
+
+    private void tick() {
+        collect();
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int refreshed = 0;
+
+        while (!pending.isEmpty()) {
+            UUID uuid = pending.poll();
+            pendingSet.remove(uuid);
+
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+
+            PlayerHelper.applyPrefix(player, dbManager);
+            permissionManager.applyPermissions(player);
+            refreshed++;
+
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            plugin.getLogger().fine("Refreshed " + refreshed + " player(s), " + pending.size() + " left for the next tick");
+        }
+    }
+
+    private void collect() {
+        Set<String> groups = Set.of();
+        Set<UUID> players = Set.of();
+
+        if (allDirty.getAndSet(false)) {
+            dirtyGroups.clear();
+            groups = new HashSet<>(dbManager.getAllGroups());
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                enqueue(player.getUniqueId());
+            }
+        } else if (!dirtyGroups.isEmpty()) {
+            groups = drain(dirtyGroups);
+            // Gruppen, die von einer geänderten Gruppe erben, sind mitbetroffen
+            for (String group : List.copyOf(groups)) {
+                groups.addAll(dbManager.getDescendantGroups(group));
+            }
+
+            // Nur die tatsächlichen Mitglieder, kein Durchlauf über alle Spieler
+            for (String group : groups) {
+                for (UUID uuid : dbManager.getGroupMembers(group)) {
+                    enqueue(uuid);
+                }
+            }
+        }
+
+        if (!dirtyPlayers.isEmpty()) {
+            players = drain(dirtyPlayers);
+            for (UUID uuid : players) {
+                enqueue(uuid);
+            }
+        }
+
+        if (!groups.isEmpty() || !players.isEmpty()) {
+            for (Listener listener : listeners) {
+                listener.onRefresh(groups, players);
+            }
+        }
+    }
+
+    private void enqueue(UUID uuid) {
+        if (pendingSet.add(uuid)) {
+            pending.add(uuid);
+        }
+    }
+
+    private static <T> Set<T> drain(Set<T> source) {
+        Set<T> drained = new HashSet<>();
+        Iterator<T> iterator = source.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+}
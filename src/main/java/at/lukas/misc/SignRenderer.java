@@ -0,0 +1,107 @@
+package at.lukas.misc;
+
+import at.lukas.manager.DatabaseManager;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Rendert ein kompiliertes {@link SignTemplate}.
+ * <p>
+ * Platzhalter:
+ * - %PlayerName%
+ * - %PlayerName%group%
+ * <p>
+ * Beispiele:
+ * - %Luggez% → [Admin] Luggez
+ * - %Steve% → [Member] Steve
+ * - %Steve%group% → [Member]
+ * - %Luggez%group% → [Admin]
+ * <p>
+ * Namen, die noch nicht aufgelöst sind, werden vorläufig grau angezeigt und in
+ * {@link RenderedSign#unresolved()} gemeldet, damit der Aufrufer nach {@link #resolve}
+ * neu rendern kann. Auf dem Main-Thread wird nie nach Profilen gefragt.
+ */
+public class SignRenderer {
+    private final DatabaseManager dbManager;
+    private final PlayerNameResolver nameResolver;
+
+    /**
+     * Gerenderte Zeilen plus die Spieler und Gruppen, von denen das Ergebnis abhängt.
+     * Zeilen ohne Platzhalter sind null und bleiben unverändert.
+     */
+    public record RenderedSign(Component[] lines, Set<UUID> players, Set<String> groups, Set<String> unresolved) {
+    }
+
+    public SignRenderer(DatabaseManager dbManager, PlayerNameResolver nameResolver) {
+        this.dbManager = dbManager;
+        this.nameResolver = nameResolver;
+    }
+
+    public RenderedSign render(String[] rawLines) {
+        return render(SignTemplate.compile(rawLines));
+    }
+
+    public RenderedSign render(SignTemplate template) {
+        Component[] lines = new Component[template.lineCount()];
+        Set<UUID> players = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        Set<String> unresolved = new HashSet<>();
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < lines.length; i++) {
+            SignTemplate.Part[] parts = template.line(i);
+            if (parts == null) {
+                continue;
+            }
+
+            text.setLength(0);
+            for (SignTemplate.Part part : parts) {
+                switch (part) {
+                    case SignTemplate.Literal literal -> text.append(literal.text());
+                    case SignTemplate.PlayerRef ref -> appendPlayer(text, ref, players, groups, unresolved);
+                }
+            }
+
+            lines[i] = LegacyComponentSerializer.legacyAmpersand().deserialize(text.toString());
+        }
+
+        return new RenderedSign(lines, players, groups, unresolved);
+    }
+
+    public CompletableFuture<Void> resolve(Set<String> names) {
+        return nameResolver.resolveAll(names);
+    }
+
+    private void appendPlayer(StringBuilder text, SignTemplate.PlayerRef ref, Set<UUID> players, Set<String> groups, Set<String> unresolved) {
+        UUID playerUuid = nameResolver.getCached(ref.name());
+
+        if (playerUuid == null) {
+            unresolved.add(ref.name());
+            text.append(ref.prefixOnly() ? "&7[...]" : "&7" + ref.name());
+            return;
+        }
+
+        if (playerUuid.equals(PlayerNameResolver.UNKNOWN)) {
+            text.append("&c[Unknown]");
+            return;
+        }
+
+        players.add(playerUuid);
+        groups.add(dbManager.getPlayerGroup(playerUuid));
+
+        String prefix = dbManager.getPlayerPrefix(playerUuid);
+        if (prefix == null || prefix.isEmpty()) {
+            text.append(ref.prefixOnly() ? "&7[Member]" : "&7" + ref.name());
+        } else {
+            text.append(prefix);
+            if (!ref.prefixOnly()) {
+                text.append(ref.name());
+            }
+        }
+    }
+}
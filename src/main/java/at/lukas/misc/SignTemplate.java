@@ -0,0 +1,123 @@
+package at.lukas.misc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Die vier Zeilen eines Schildes, einmal in Text und Platzhalter zerlegt.
+ * <p>
+ * Ein einziger Durchlauf pro Zeile, ohne reguläre Ausdrücke:
+ * - %PlayerName%       → {@link PlayerRef} mit prefixOnly = false
+ * - %PlayerName%group% → {@link PlayerRef} mit prefixOnly = true
+ * Alles andere (auch einzelne %) bleibt Text.
+ */
+public final class SignTemplate {
+    private static final String GROUP_SUFFIX = "group%";
+
+    public sealed interface Part permits Literal, PlayerRef {
+    }
+
+    public record Literal(String text) implements Part {
+    }
+
+    public record PlayerRef(String name, boolean prefixOnly) implements Part {
+    }
+
+    private final Part[][] lines;
+    private final Set<String> playerNames;
+
+    private SignTemplate(Part[][] lines, Set<String> playerNames) {
+        this.lines = lines;
+        this.playerNames = playerNames;
+    }
+
+    public static SignTemplate compile(String[] rawLines) {
+        Part[][] lines = new Part[rawLines.length][];
+        Set<String> playerNames = new LinkedHashSet<>();
+
+        for (int i = 0; i < rawLines.length; i++) {
+            lines[i] = compileLine(rawLines[i], playerNames);
+        }
+
+        return new SignTemplate(lines, playerNames);
+    }
+
+    // null, wenn die Zeile keinen Platzhalter enthält
+    private static Part[] compileLine(String line, Set<String> playerNames) {
+        if (line == null || line.indexOf('%') < 0) {
+            return null;
+        }
+
+        List<Part> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int length = line.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = line.charAt(i);
+            int nameEnd = c == '%' ? scanName(line, i + 1) : i + 1;
+
+            if (c != '%' || nameEnd == i + 1 || nameEnd >= length || line.charAt(nameEnd) != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            String name = line.substring(i + 1, nameEnd);
+            boolean prefixOnly = line.startsWith(GROUP_SUFFIX, nameEnd + 1);
+
+            if (!literal.isEmpty()) {
+                parts.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            parts.add(new PlayerRef(name, prefixOnly));
+            playerNames.add(name);
+
+            i = nameEnd + 1 + (prefixOnly ? GROUP_SUFFIX.length() : 0);
+        }
+
+        if (!literal.isEmpty()) {
+            parts.add(new Literal(literal.toString()));
+        }
+
+        for (Part part : parts) {
+            if (part instanceof PlayerRef) {
+                return parts.toArray(Part[]::new);
+            }
+        }
+        return null;
+    }
+
+    private static int scanName(String line, int start) {
+        int i = start;
+        while (i < line.length() && isNameChar(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    public int lineCount() {
+        return lines.length;
+    }
+
+    /**
+     * Teile einer Zeile oder null, wenn sie keinen Platzhalter enthält.
+     */
+    public Part[] line(int index) {
+        return lines[index];
+    }
+
+    public Set<String> playerNames() {
+        return playerNames;
+    }
+
+    public boolean hasPlaceholders() {
+        return !playerNames.isEmpty();
+    }
+}
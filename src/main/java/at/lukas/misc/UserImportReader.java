@@ -0,0 +1,141 @@
+package at.lukas.misc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Liest eine Importdatei für /gs import-users Zeile für Zeile, ohne sie ganz in den Speicher zu laden.
+ * <p>
+ * Formate (nach Dateiendung):
+ * - .csv: uuid,group[,duration], optional mit Kopfzeile "uuid,group,duration"
+ * - .ndjson / .jsonl: pro Zeile {"uuid": "...", "group": "...", "duration": "30d"}
+ * Leere Zeilen und Zeilen mit # werden übersprungen. duration fehlt, ist leer oder
+ * "permanent" = dauerhaft, sonst wie bei /gs adduser.
+ */
+public class UserImportReader implements Closeable {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Unsupported file type (expected .csv, .ndjson or .jsonl): " + file.getFileName());
+        }
+    }
+
+    /**
+     * Eine gültige Zeile. durationMillis ist null für dauerhafte Zuweisungen.
+     */
+    public record Row(int line, UUID uuid, String group, Long durationMillis) {
+    }
+
+    private final BufferedReader reader;
+    private final Format format;
+    private int lineNumber;
+
+    public UserImportReader(BufferedReader reader, Format format) {
+        this.reader = reader;
+        this.format = format;
+    }
+
+    /**
+     * Nächste Zeile oder null am Dateiende.
+     *
+     * @throws IllegalArgumentException wenn die Zeile ungültig ist; danach kann weitergelesen werden
+     */
+    public Row next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            if (format == Format.CSV && lineNumber == 1 && trimmed.toLowerCase(Locale.ROOT).startsWith("uuid")) {
+                continue;
+            }
+
+            try {
+                return format == Format.CSV ? parseCsv(trimmed) : parseJson(trimmed);
+            } catch (IllegalArgumentException | JsonParseException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    private Row parseCsv(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length < 2 || columns.length > 3) {
+            throw new IllegalArgumentException("expected uuid,group[,duration]");
+        }
+
+        return row(unquote(columns[0]), unquote(columns[1]), columns.length == 3 ? unquote(columns[2]) : null);
+    }
+
+    private Row parseJson(String line) {
+        JsonElement element = JsonParser.parseString(line);
+        if (!element.isJsonObject()) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+
+        JsonObject object = element.getAsJsonObject();
+        return row(string(object, "uuid"), string(object, "group"), string(object, "duration"));
+    }
+
+    private Row row(String uuid, String group, String duration) {
+        if (uuid == null || uuid.isEmpty()) {
+            throw new IllegalArgumentException("missing uuid");
+        }
+        if (group == null || group.isEmpty()) {
+            throw new IllegalArgumentException("missing group");
+        }
+
+        UUID parsedUuid;
+        try {
+            parsedUuid = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid uuid '" + uuid + "'");
+        }
+
+        return new Row(lineNumber, parsedUuid, group.toLowerCase(Locale.ROOT), DurationParser.parse(duration));
+    }
+
+    private static String string(JsonObject object, String key) {
+        JsonElement value = object.get(key);
+        return value == null || value.isJsonNull() ? null : value.getAsString().trim();
+    }
+
+    private static String unquote(String column) {
+        String value = column.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1).trim();
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
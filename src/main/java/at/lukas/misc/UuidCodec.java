@@ -0,0 +1,29 @@
+package at.lukas.misc;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Wandelt UUIDs in ihre kompakte 16-Byte-Form für BINARY(16)-Spalten um und zurück.
+ */
+public class UuidCodec {
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("UUID must be 16 bytes, got " + bytes.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
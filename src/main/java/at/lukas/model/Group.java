@@ -1,12 +1,31 @@
 package at.lukas.model;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
-@AllArgsConstructor
 public class Group {
     private int id;
     private String name;
     private String prefix;
+
+    // Wird zusammen mit dem Prefix gesetzt, damit nicht bei jedem Anzeigenamen neu geparst wird
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private RenderedPrefix renderedPrefix;
+
+    public Group(int id, String name, String prefix) {
+        this.id = id;
+        this.name = name;
+        setPrefix(prefix);
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+        this.renderedPrefix = RenderedPrefix.of(prefix);
+    }
 }
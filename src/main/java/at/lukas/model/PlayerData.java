@@ -0,0 +1,15 @@
+package at.lukas.model;
+
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Beim Login vorgeladene Daten eines Spielers.
+ */
+@Value
+public class PlayerData {
+    String groupName;
+    Long expiryMillis;
+    Set<String> permissions;
+}
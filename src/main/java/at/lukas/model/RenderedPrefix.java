@@ -0,0 +1,47 @@
+package at.lukas.model;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.List;
+
+/**
+ * Bereits geparster Gruppen-Prefix. Wird einmal pro Gruppe erzeugt, Anzeigenamen hängen
+ * nur noch den Spielernamen an.
+ *
+ * @param prefix    Prefix inklusive Leerzeichen, unveränderlich
+ * @param nameStyle Formatierung, die im Legacy-Text am Ende des Prefix aktiv ist
+ *                  (z.B. grün bei "&a[VIP]") und deshalb auch für den Namen gilt
+ */
+public record RenderedPrefix(Component prefix, Style nameStyle) {
+    private static final String DEFAULT_PREFIX = "&7";
+
+    public static final RenderedPrefix DEFAULT = of(DEFAULT_PREFIX);
+
+    public static RenderedPrefix of(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            prefix = DEFAULT_PREFIX;
+        }
+
+        Component component = LegacyComponentSerializer.legacyAmpersand().deserialize(prefix + " ");
+        return new RenderedPrefix(component, trailingStyle(component));
+    }
+
+    public Component withName(String playerName) {
+        return Component.textOfChildren(prefix, Component.text(playerName, nameStyle));
+    }
+
+    private static Style trailingStyle(Component component) {
+        Style style = component.style();
+        List<Component> children = component.children();
+
+        while (!children.isEmpty()) {
+            Component last = children.get(children.size() - 1);
+            style = style.merge(last.style());
+            children = last.children();
+        }
+
+        return style;
+    }
+}
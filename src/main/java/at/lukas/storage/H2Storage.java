@@ -0,0 +1,186 @@
+package at.lukas.storage;
+
+import at.lukas.migration.Migration;
+import at.lukas.migration.SqlMigration;
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Eingebettete H2-Datenbank als Datei im Plugin-Ordner.
+ * <p>
+ * Für einzelne Server und Testserver: kein separater Datenbankprozess und keine
+ * Netzwerk-Roundtrips. Die Datei gehört exklusiv einem Server, sync.enabled ist hier
+ * also nicht sinnvoll.
+ * <p>
+ * Die Session läuft in UTC, damit die Umrechnung von TIMESTAMP in Epoch-Millisekunden
+ * unabhängig von der Zeitzone des Servers ist.
+ */
+public class H2Storage implements Storage {
+    private static final String EPOCH = "TIMESTAMP '1970-01-01 00:00:00'";
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public void configure(HikariConfig hikariConfig, FileConfiguration config, File dataFolder) {
+        String fileName = config.getString("database.h2.file", "groupsystem");
+        File file = new File(dataFolder, fileName);
+
+        hikariConfig.setDriverClassName("org.h2.Driver");
+        hikariConfig.setJdbcUrl("jdbc:h2:file:" + file.getAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE");
+        hikariConfig.setUsername("sa");
+        hikariConfig.setPassword("");
+        hikariConfig.setConnectionInitSql("SET TIME ZONE 'UTC'");
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return List.of(
+                new SqlMigration(1, "Baseline schema", List.of(
+                        """
+                        CREATE TABLE IF NOT EXISTS group_data (
+                            id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                            name VARCHAR(36) NOT NULL UNIQUE,
+                            prefix VARCHAR(64)
+                        )
+                        """,
+                        """
+                        CREATE TABLE IF NOT EXISTS player_groups (
+                            uuid BINARY(16) NOT NULL PRIMARY KEY,
+                            group_id INT NOT NULL,
+                            expiry TIMESTAMP NULL,
+                            assigned_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP,
+                            CONSTRAINT fk_player_groups_group
+                                FOREIGN KEY (group_id)
+                                REFERENCES group_data(id)
+                                ON DELETE CASCADE
+                        )
+                        """,
+                        "CREATE INDEX IF NOT EXISTS idx_player_groups_group ON player_groups (group_id)",
+                        "CREATE INDEX IF NOT EXISTS idx_player_groups_expiry ON player_groups (expiry)",
+                        """
+                        CREATE TABLE IF NOT EXISTS group_permissions (
+                            id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                            group_id INT NOT NULL,
+                            permission VARCHAR(255) NOT NULL,
+                            CONSTRAINT fk_group_permissions_group
+                                FOREIGN KEY (group_id)
+                                REFERENCES group_data(id)
+                                ON DELETE CASCADE,
+                            CONSTRAINT unique_group_permission UNIQUE (group_id, permission)
+                        )
+                        """,
+                        """
+                        CREATE TABLE IF NOT EXISTS group_change_log (
+                            seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                            server_id CHAR(36) NOT NULL,
+                            change_type VARCHAR(32) NOT NULL,
+                            group_name VARCHAR(36) NULL,
+                            player_uuid BINARY(16) NULL,
+                            created_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+                        )
+                        """,
+                        "CREATE INDEX IF NOT EXISTS idx_group_change_log_created ON group_change_log (created_at)",
+                        """
+                        MERGE INTO group_data (name, prefix) KEY (name) VALUES
+                        ('default', '&7[Member]'),
+                        ('vip', '&6[VIP]'),
+                        ('admin', '&c[Admin]')
+                        """
+                )),
+                // UUIDs sind hier von Anfang an BINARY(16) - nur damit die Versionsnummern mit MySQL übereinstimmen
+                new SqlMigration(2, "Store UUIDs as BINARY(16)", List.of()),
+                new SqlMigration(3, "Player name index", List.of(
+                        """
+                        CREATE TABLE IF NOT EXISTS player_names (
+                            uuid BINARY(16) NOT NULL PRIMARY KEY,
+                            last_name VARCHAR(16) NOT NULL,
+                            name_lower VARCHAR(16) NOT NULL,
+                            last_seen TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+                        )
+                        """,
+                        "CREATE INDEX IF NOT EXISTS idx_player_names_name ON player_names (name_lower, last_seen)"
+                )),
+                new SqlMigration(4, "Group parents", List.of(
+                        """
+                        CREATE TABLE IF NOT EXISTS group_parents (
+                            group_id INT NOT NULL,
+                            parent_id INT NOT NULL,
+                            PRIMARY KEY (group_id, parent_id),
+                            FOREIGN KEY (group_id) REFERENCES group_data(id) ON DELETE CASCADE,
+                            FOREIGN KEY (parent_id) REFERENCES group_data(id) ON DELETE CASCADE
+                        )
+                        """,
+                        "CREATE INDEX IF NOT EXISTS idx_group_parents_parent ON group_parents (parent_id)"
+                ))
+        );
+    }
+
+    @Override
+    public void lockSchema(Connection conn) {
+        // Eingebettet - es gibt nur diesen einen Server
+    }
+
+    @Override
+    public void unlockSchema(Connection conn) {
+    }
+
+    @Override
+    public String upsertPlayerGroupQuery() {
+        return """
+                MERGE INTO player_groups (uuid, group_id, expiry, assigned_at) KEY (uuid)
+                VALUES (?, ?, %s, LOCALTIMESTAMP)
+                """.formatted(fromEpochSeconds("?"));
+    }
+
+    @Override
+    public String insertGroupPermissionQuery() {
+        return """
+                MERGE INTO group_permissions (group_id, permission) KEY (group_id, permission)
+                VALUES (?, ?)
+                """;
+    }
+
+    @Override
+    public String insertGroupParentQuery() {
+        return """
+                MERGE INTO group_parents (group_id, parent_id) KEY (group_id, parent_id)
+                VALUES (?, ?)
+                """;
+    }
+
+    @Override
+    public String purgeChangeLogQuery() {
+        return "DELETE FROM group_change_log WHERE created_at < DATEADD(HOUR, -CAST(? AS INT), LOCALTIMESTAMP)";
+    }
+
+    @Override
+    public String upsertPlayerNameQuery() {
+        return """
+                MERGE INTO player_names (uuid, last_name, name_lower, last_seen) KEY (uuid)
+                VALUES (?, ?, ?, LOCALTIMESTAMP)
+                """;
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        // Große Ergebnisse lagert H2 ohnehin auf die Platte aus
+        return 1000;
+    }
+
+    @Override
+    public String epochMillis(String column) {
+        return "DATEDIFF(MILLISECOND, " + EPOCH + ", " + column + ")";
+    }
+
+    @Override
+    public String fromEpochSeconds(String parameter) {
+        return "DATEADD(SECOND, CAST(" + parameter + " AS BIGINT), " + EPOCH + ")";
+    }
+}
@@ -0,0 +1,150 @@
+package at.lukas.storage;
+
+import at.lukas.migration.BaselineMigration;
+import at.lukas.migration.BinaryUuidMigration;
+import at.lukas.migration.Migration;
+import at.lukas.migration.SqlMigration;
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Externer MySQL/MariaDB-Server, auch für mehrere Server an einer Datenbank.
+ */
+public class MySqlStorage implements Storage {
+    private static final String LOCK_NAME = "customgroupsystem_schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 300;
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public void configure(HikariConfig hikariConfig, FileConfiguration config, File dataFolder) {
+        String host = config.getString("database.host", "localhost");
+        int port = config.getInt("database.port", 3306);
+        String database = config.getString("database.database", "minecraft");
+
+        hikariConfig.setJdbcUrl(String.format("jdbc:mysql://%s:%d/%s", host, port, database));
+        hikariConfig.setUsername(config.getString("database.username", "mcuser"));
+        hikariConfig.setPassword(config.getString("database.password", "mcuser"));
+        // Batches als ein mehrzeiliges Statement senden statt einzeln
+        hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return List.of(
+                BaselineMigration.create(),
+                new BinaryUuidMigration(),
+                new SqlMigration(3, "Player name index", List.of(
+                        """
+                        CREATE TABLE IF NOT EXISTS player_names (
+                            uuid BINARY(16) NOT NULL PRIMARY KEY,
+                            last_name VARCHAR(16) NOT NULL,
+                            name_lower VARCHAR(16) NOT NULL,
+                            last_seen DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                            INDEX idx_player_names_name (name_lower, last_seen)
+                        )
+                        """
+                )),
+                new SqlMigration(4, "Group parents", List.of(
+                        """
+                        CREATE TABLE IF NOT EXISTS group_parents (
+                            group_id INT NOT NULL,
+                            parent_id INT NOT NULL,
+                            PRIMARY KEY (group_id, parent_id),
+                            INDEX idx_group_parents_parent (parent_id),
+                            FOREIGN KEY (group_id) REFERENCES group_data(id) ON DELETE CASCADE,
+                            FOREIGN KEY (parent_id) REFERENCES group_data(id) ON DELETE CASCADE
+                        )
+                        """
+                ))
+        );
+    }
+
+    @Override
+    public void lockSchema(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Could not acquire schema migration lock within " + LOCK_TIMEOUT_SECONDS + "s");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void unlockSchema(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    @Override
+    public String upsertPlayerGroupQuery() {
+        return """
+                REPLACE INTO player_groups (uuid, group_id, expiry, assigned_at)
+                VALUES (?, ?, FROM_UNIXTIME(?), NOW())
+                """;
+    }
+
+    @Override
+    public String insertGroupPermissionQuery() {
+        return """
+                INSERT INTO group_permissions (group_id, permission)
+                VALUES (?, ?)
+                ON DUPLICATE KEY UPDATE permission = VALUES(permission)
+                """;
+    }
+
+    @Override
+    public String insertGroupParentQuery() {
+        return """
+                INSERT INTO group_parents (group_id, parent_id)
+                VALUES (?, ?)
+                ON DUPLICATE KEY UPDATE parent_id = VALUES(parent_id)
+                """;
+    }
+
+    @Override
+    public String purgeChangeLogQuery() {
+        return "DELETE FROM group_change_log WHERE created_at < NOW() - INTERVAL ? HOUR";
+    }
+
+    @Override
+    public String upsertPlayerNameQuery() {
+        return """
+                INSERT INTO player_names (uuid, last_name, name_lower, last_seen)
+                VALUES (?, ?, ?, NOW())
+                ON DUPLICATE KEY UPDATE last_name = VALUES(last_name), name_lower = VALUES(name_lower), last_seen = NOW()
+                """;
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        // Connector/J streamt dann Zeile für Zeile, statt das ganze Ergebnis zu laden
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String epochMillis(String column) {
+        return "UNIX_TIMESTAMP(" + column + ") * 1000";
+    }
+
+    @Override
+    public String fromEpochSeconds(String parameter) {
+        return "FROM_UNIXTIME(" + parameter + ")";
+    }
+}
@@ -0,0 +1,87 @@
+package at.lukas.storage;
+
+import at.lukas.migration.Migration;
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Datenbank-Backend (database.type).
+ * <p>
+ * Der DatabaseManager schreibt nur portables SQL selbst, alles Dialekt-Spezifische
+ * (Upserts, Zeitumrechnung, Schema, Sperren) kommt von hier.
+ * <p>
+ * Zeitpunkte werden als DATETIME/TIMESTAMP ohne Zeitzone gespeichert und von den
+ * Backends in Millisekunden seit Epoch umgerechnet.
+ */
+public interface Storage {
+    String getName();
+
+    /**
+     * Setzt JDBC-URL, Treiber und Zugangsdaten. Pool-Größen setzt CustomGroupSystem.
+     */
+    void configure(HikariConfig hikariConfig, FileConfiguration config, File dataFolder);
+
+    List<Migration> getMigrations();
+
+    /**
+     * Verhindert, dass mehrere Server gleichzeitig migrieren.
+     */
+    void lockSchema(Connection conn) throws SQLException;
+
+    void unlockSchema(Connection conn) throws SQLException;
+
+    /**
+     * Parameter: uuid, group_id, Ablaufzeitpunkt in Sekunden seit Epoch oder NULL.
+     */
+    String upsertPlayerGroupQuery();
+
+    /**
+     * Parameter: group_id, permission. Bereits vorhandene Einträge werden ignoriert.
+     */
+    String insertGroupPermissionQuery();
+
+    /**
+     * Parameter: group_id, parent_id. Bereits vorhandene Einträge werden ignoriert.
+     */
+    String insertGroupParentQuery();
+
+    /**
+     * Parameter: Aufbewahrung in Stunden.
+     */
+    String purgeChangeLogQuery();
+
+    /**
+     * Parameter: uuid, last_name, name_lower. last_seen wird auf jetzt gesetzt.
+     */
+    String upsertPlayerNameQuery();
+
+    /**
+     * Fetch-Size für Abfragen, die ganze Tabellen Zeile für Zeile lesen (Export).
+     */
+    int streamingFetchSize();
+
+    /**
+     * SQL-Ausdruck, der eine Zeitspalte in Millisekunden seit Epoch umrechnet.
+     */
+    String epochMillis(String column);
+
+    /**
+     * SQL-Ausdruck, der einen Parameter in Sekunden seit Epoch in einen Zeitpunkt umrechnet.
+     */
+    String fromEpochSeconds(String parameter);
+
+    static Storage fromConfig(FileConfiguration config) {
+        String type = config.getString("database.type", "mysql");
+
+        return switch (type.toLowerCase()) {
+            case "mysql" -> new MySqlStorage();
+            case "h2" -> new H2Storage();
+            default -> throw new IllegalArgumentException("Unknown database type: " + type);
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package at.lukas;
+
+import at.lukas.misc.DatasetFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetFileTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void roundTripsAllEntryTypes() throws IOException {
+        Path file = folder.resolve("groups.cgsd");
+        UUID uuid = UUID.randomUUID();
+
+        try (DatasetFile.Writer writer = new DatasetFile.Writer(file)) {
+            writer.writeGroup(1, "default", "&7[Member]");
+            writer.writeGroup(2, "vip", null);
+            writer.writeParent(2, 1);
+            writer.writePermission(2, "essentials.fly");
+            writer.writePlayer(uuid, 2, 1_900_000_000L);
+            assertEquals(new DatasetFile.Counts(2, 1, 1, 1), writer.finish());
+        }
+
+        try (DatasetFile.Reader reader = new DatasetFile.Reader(file)) {
+            assertEquals(new DatasetFile.GroupEntry(1, "default", "&7[Member]"), reader.next());
+            assertEquals(new DatasetFile.GroupEntry(2, "vip", null), reader.next());
+            assertEquals(new DatasetFile.ParentEntry(2, 1), reader.next());
+            assertEquals(new DatasetFile.PermissionEntry(2, "essentials.fly"), reader.next());
+            assertEquals(new DatasetFile.PlayerEntry(uuid, 2, 1_900_000_000L), reader.next());
+            assertNull(reader.next());
+            assertEquals(new DatasetFile.Counts(2, 1, 1, 1), reader.getCounts());
+        }
+    }
+
+    @Test
+    void readsMoreEntriesThanFitIntoTheBuffer() throws IOException {
+        Path file = folder.resolve("large.cgsd");
+        int players = 100_000;
+
+        try (DatasetFile.Writer writer = new DatasetFile.Writer(file)) {
+            writer.writeGroup(1, "default", "&7[Member]");
+            for (int i = 0; i < players; i++) {
+                writer.writePlayer(new UUID(0, i), 1, DatasetFile.PERMANENT);
+            }
+            writer.finish();
+        }
+
+        try (DatasetFile.Reader reader = new DatasetFile.Reader(file)) {
+            reader.next();
+            for (int i = 0; i < players; i++) {
+                DatasetFile.PlayerEntry entry = (DatasetFile.PlayerEntry) reader.next();
+                assertEquals(new UUID(0, i), entry.uuid());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path file = folder.resolve("truncated.cgsd");
+
+        try (DatasetFile.Writer writer = new DatasetFile.Writer(file)) {
+            writer.writeGroup(1, "default", null);
+            writer.writePlayer(UUID.randomUUID(), 1, DatasetFile.PERMANENT);
+            writer.finish();
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+
+        try (DatasetFile.Reader reader = new DatasetFile.Reader(file)) {
+            reader.next();
+            reader.next();
+            assertThrows(EOFException.class, reader::next);
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = folder.resolve("ranks.csv");
+        Files.writeString(file, "uuid,group,duration\n");
+
+        assertThrows(IOException.class, () -> new DatasetFile.Reader(file).close());
+    }
+}
@@ -0,0 +1,136 @@
+package at.lukas;
+
+import at.lukas.manager.DatasetTransfer;
+import at.lukas.migration.MigrationRunner;
+import at.lukas.misc.DatasetFile;
+import at.lukas.misc.UuidCodec;
+import at.lukas.storage.H2Storage;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetTransferTest {
+
+    private final H2Storage storage = new H2Storage();
+    private final DatasetTransfer transfer = new DatasetTransfer(storage);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void exportAndImportMoveAllDataToAnotherDatabase() throws SQLException, IOException {
+        JdbcDataSource source = migratedDatabase();
+        JdbcDataSource target = migratedDatabase();
+        Path file = folder.resolve("groups.cgsd");
+        UUID permanent = UUID.randomUUID();
+        UUID temporary = UUID.randomUUID();
+
+        try (Connection conn = source.getConnection()) {
+            execute(conn, "INSERT INTO group_data (name, prefix) VALUES ('builder', '&e[Builder]')");
+            int builderId = groupId(conn, "builder");
+            execute(conn, "INSERT INTO group_permissions (group_id, permission) VALUES (" + builderId + ", 'worldedit.*')");
+            execute(conn, "INSERT INTO group_parents (group_id, parent_id) VALUES (" + builderId + ", " + groupId(conn, "vip") + ")");
+            assignPlayer(conn, permanent, builderId, null);
+            assignPlayer(conn, temporary, groupId(conn, "vip"), 1_900_000_000L);
+
+            assertEquals(new DatasetFile.Counts(4, 1, 1, 2), transfer.export(conn, file));
+        }
+
+        List<String> importedGroups = new ArrayList<>();
+        try (Connection conn = target.getConnection()) {
+            assertEquals(new DatasetFile.Counts(4, 1, 1, 2), transfer.importFrom(conn, file, importedGroups));
+
+            int builderId = groupId(conn, "builder");
+            assertEquals(List.of("worldedit.*"), strings(conn, "SELECT permission FROM group_permissions WHERE group_id = " + builderId));
+            assertEquals(List.of(String.valueOf(groupId(conn, "vip"))), strings(conn, "SELECT parent_id FROM group_parents WHERE group_id = " + builderId));
+            assertEquals(builderId, playerGroupId(conn, permanent));
+            assertEquals(groupId(conn, "vip"), playerGroupId(conn, temporary));
+        }
+
+        assertTrue(importedGroups.containsAll(List.of("default", "vip", "admin", "builder")));
+    }
+
+    @Test
+    void failedImportChangesNothing() throws SQLException, IOException {
+        JdbcDataSource target = migratedDatabase();
+        Path file = folder.resolve("broken.cgsd");
+
+        // Spieler verweist auf eine Gruppe, die nicht in der Datei steht
+        try (DatasetFile.Writer writer = new DatasetFile.Writer(file)) {
+            writer.writeGroup(1, "builder", "&e[Builder]");
+            writer.writePlayer(UUID.randomUUID(), 99, DatasetFile.PERMANENT);
+            writer.finish();
+        }
+
+        try (Connection conn = target.getConnection()) {
+            assertThrows(IOException.class, () -> transfer.importFrom(conn, file, new ArrayList<>()));
+            assertTrue(strings(conn, "SELECT name FROM group_data WHERE name = 'builder'").isEmpty());
+        }
+    }
+
+    private JdbcDataSource migratedDatabase() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new MigrationRunner(dataSource, storage, Logger.getLogger("DatasetTransferTest")).migrate();
+        return dataSource;
+    }
+
+    private void assignPlayer(Connection conn, UUID uuid, int groupId, Long expirySeconds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerGroupQuery())) {
+            stmt.setBytes(1, UuidCodec.toBytes(uuid));
+            stmt.setInt(2, groupId);
+            if (expirySeconds != null) {
+                stmt.setLong(3, expirySeconds);
+            } else {
+                stmt.setNull(3, Types.BIGINT);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private static int groupId(Connection conn, String name) throws SQLException {
+        return Integer.parseInt(strings(conn, "SELECT id FROM group_data WHERE name = '" + name + "'").get(0));
+    }
+
+    private static int playerGroupId(Connection conn, UUID uuid) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT group_id FROM player_groups WHERE uuid = ?")) {
+            stmt.setBytes(1, UuidCodec.toBytes(uuid));
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static List<String> strings(Connection conn, String query) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package at.lukas;
+
+import at.lukas.misc.ExpiryIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiryIndexTest {
+
+    @Test
+    void returnsEarliestDeadline() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(10_000);
+
+        index.schedule(UUID.randomUUID(), 5_000);
+        index.schedule(UUID.randomUUID(), 2_000);
+
+        assertEquals(2_000L, index.nextDeadline());
+    }
+
+    @Test
+    void ignoresDeadlinesBehindHorizon() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(1_000);
+
+        index.schedule(UUID.randomUUID(), 5_000);
+
+        assertNull(index.nextDeadline());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void rescheduleReplacesPreviousEntry() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(10_000);
+        UUID uuid = UUID.randomUUID();
+
+        index.schedule(uuid, 1_000);
+        index.schedule(uuid, 8_000);
+
+        assertEquals(1, index.size());
+        assertEquals(8_000L, index.nextDeadline());
+    }
+
+    @Test
+    void pollDueReturnsOnlyReachedDeadlines() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(10_000);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID later = UUID.randomUUID();
+
+        index.schedule(first, 1_000);
+        index.schedule(second, 1_000);
+        index.schedule(later, 9_000);
+
+        List<UUID> due = index.pollDue(1_000);
+
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of(first, second)));
+        assertEquals(9_000L, index.nextDeadline());
+    }
+
+    @Test
+    void scheduleIfAbsentKeepsANewerDeadline() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(10_000);
+        UUID rescheduled = UUID.randomUUID();
+        UUID retried = UUID.randomUUID();
+
+        index.schedule(rescheduled, 5_000);
+        index.scheduleIfAbsent(rescheduled, 2_000);
+        index.scheduleIfAbsent(retried, 20_000);
+
+        assertEquals(5_000L, index.nextDeadline());
+        assertEquals(List.of(rescheduled), index.pollDue(5_000));
+        assertEquals(List.of(retried), index.pollDue(20_000));
+    }
+
+    @Test
+    void removeDropsEntry() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(10_000);
+        UUID uuid = UUID.randomUUID();
+
+        index.schedule(uuid, 1_000);
+        index.remove(uuid);
+
+        assertNull(index.nextDeadline());
+    }
+
+    @Test
+    void notifiesOnlyWhenEarliestChanges() {
+        ExpiryIndex index = new ExpiryIndex();
+        index.setHorizon(10_000);
+        AtomicInteger calls = new AtomicInteger();
+        index.setOnEarliestChanged(calls::incrementAndGet);
+
+        index.schedule(UUID.randomUUID(), 5_000);
+        index.schedule(UUID.randomUUID(), 7_000);
+        index.schedule(UUID.randomUUID(), 3_000);
+
+        assertEquals(2, calls.get());
+    }
+}
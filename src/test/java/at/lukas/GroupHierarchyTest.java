@@ -0,0 +1,81 @@
+package at.lukas;
+
+import at.lukas.manager.GroupHierarchy;
+import at.lukas.manager.PermissionDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupHierarchyTest {
+
+    private static final int DEFAULT = 1;
+    private static final int VIP = 2;
+    private static final int ADMIN = 3;
+    private static final int BUILDER = 4;
+
+    private GroupHierarchy hierarchy() {
+        GroupHierarchy hierarchy = new GroupHierarchy(new PermissionDictionary());
+        hierarchy.load(Map.of(
+                DEFAULT, List.of("essentials.spawn"),
+                VIP, List.of("essentials.fly"),
+                ADMIN, List.of("minecraft.command.gamemode"),
+                BUILDER, List.of("worldedit.*")
+        ), List.of(
+                new GroupHierarchy.Link(VIP, DEFAULT),
+                new GroupHierarchy.Link(ADMIN, VIP)
+        ));
+        return hierarchy;
+    }
+
+    @Test
+    void effectiveSetContainsAllAncestors() {
+        GroupHierarchy hierarchy = hierarchy();
+
+        assertEquals(Set.of("minecraft.command.gamemode", "essentials.fly", "essentials.spawn"), hierarchy.getEffective(ADMIN));
+        assertEquals(Set.of("worldedit.*"), hierarchy.getEffective(BUILDER));
+        assertThrows(UnsupportedOperationException.class, () -> hierarchy.getEffective(ADMIN).add("x"));
+    }
+
+    @Test
+    void parentChangeRecomputesOnlyDescendants() {
+        GroupHierarchy hierarchy = hierarchy();
+        Set<String> builderBefore = hierarchy.getEffective(BUILDER);
+
+        assertEquals(Set.of(VIP, ADMIN), hierarchy.addPermission(VIP, "essentials.heal"));
+
+        assertTrue(hierarchy.getEffective(ADMIN).contains("essentials.heal"));
+        assertFalse(hierarchy.getEffective(DEFAULT).contains("essentials.heal"));
+        assertSame(builderBefore, hierarchy.getEffective(BUILDER));
+
+        hierarchy.removeParent(VIP, DEFAULT);
+        assertFalse(hierarchy.getEffective(ADMIN).contains("essentials.spawn"));
+    }
+
+    @Test
+    void cyclesAreRejected() {
+        GroupHierarchy hierarchy = hierarchy();
+
+        assertTrue(hierarchy.wouldCreateCycle(DEFAULT, ADMIN));
+        assertThrows(IllegalArgumentException.class, () -> hierarchy.addParent(DEFAULT, ADMIN));
+        assertThrows(IllegalArgumentException.class, () -> hierarchy.addParent(VIP, VIP));
+
+        List<GroupHierarchy.Link> rejected = hierarchy.put(DEFAULT, List.of("essentials.spawn"), List.of(ADMIN, BUILDER));
+        assertEquals(List.of(new GroupHierarchy.Link(DEFAULT, ADMIN)), rejected);
+        assertTrue(hierarchy.getEffective(ADMIN).contains("worldedit.*"));
+    }
+
+    @Test
+    void removedParentNoLongerContributes() {
+        GroupHierarchy hierarchy = hierarchy();
+
+        assertEquals(Set.of(ADMIN), hierarchy.remove(VIP));
+
+        assertNull(hierarchy.getEffective(VIP));
+        assertEquals(Set.of("minecraft.command.gamemode"), hierarchy.getEffective(ADMIN));
+        assertTrue(hierarchy.getParents(ADMIN).isEmpty());
+    }
+}
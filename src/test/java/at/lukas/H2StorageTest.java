@@ -0,0 +1,140 @@
+package at.lukas;
+
+import at.lukas.migration.MigrationRunner;
+import at.lukas.misc.UuidCodec;
+import at.lukas.storage.H2Storage;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class H2StorageTest {
+
+    private final H2Storage storage = new H2Storage();
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+
+        new MigrationRunner(dataSource, storage, Logger.getLogger("H2StorageTest")).migrate();
+    }
+
+    @Test
+    void migrationsCreateDefaultGroupsAndRunOnlyOnce() throws SQLException {
+        assertEquals(0, new MigrationRunner(dataSource, storage, Logger.getLogger("H2StorageTest")).migrate());
+
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM group_data")) {
+            rs.next();
+            assertEquals(3, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void upsertStoresExpiryAsEpochSeconds() throws SQLException {
+        UUID uuid = UUID.randomUUID();
+        long expirySeconds = 1_900_000_000L;
+
+        try (Connection conn = connect()) {
+            upsert(conn, uuid, expirySeconds);
+            assertEquals(expirySeconds * 1000, readExpiry(conn, uuid));
+
+            upsert(conn, uuid, null);
+            assertNull(readExpiry(conn, uuid));
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM player_groups")) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void insertGroupPermissionIgnoresDuplicates() throws SQLException {
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(storage.insertGroupPermissionQuery())) {
+            for (int i = 0; i < 2; i++) {
+                stmt.setInt(1, 1);
+                stmt.setString(2, "essentials.fly");
+                stmt.executeUpdate();
+            }
+
+            try (Statement count = conn.createStatement();
+                 ResultSet rs = count.executeQuery("SELECT COUNT(*) FROM group_permissions")) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void upsertPlayerNameKeepsOneRowPerPlayer() throws SQLException {
+        UUID uuid = UUID.randomUUID();
+
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerNameQuery())) {
+            for (String name : new String[]{"Steve", "Alex"}) {
+                stmt.setBytes(1, UuidCodec.toBytes(uuid));
+                stmt.setString(2, name);
+                stmt.setString(3, name.toLowerCase());
+                stmt.executeUpdate();
+            }
+
+            try (Statement query = conn.createStatement();
+                 ResultSet rs = query.executeQuery("SELECT last_name, name_lower FROM player_names")) {
+                assertTrue(rs.next());
+                assertEquals("Alex", rs.getString("last_name"));
+                assertEquals("alex", rs.getString("name_lower"));
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection conn = dataSource.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET TIME ZONE 'UTC'");
+        }
+        return conn;
+    }
+
+    private void upsert(Connection conn, UUID uuid, Long expirySeconds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerGroupQuery())) {
+            stmt.setBytes(1, UuidCodec.toBytes(uuid));
+            stmt.setInt(2, 1);
+            if (expirySeconds != null) {
+                stmt.setLong(3, expirySeconds);
+            } else {
+                stmt.setNull(3, Types.BIGINT);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private Long readExpiry(Connection conn, UUID uuid) throws SQLException {
+        String query = "SELECT " + storage.epochMillis("expiry") + " AS expiry_millis FROM player_groups WHERE uuid = ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setBytes(1, UuidCodec.toBytes(uuid));
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                long expiry = rs.getLong("expiry_millis");
+                return rs.wasNull() ? null : expiry;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package at.lukas;
+
+import at.lukas.metrics.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptySnapshotIsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram("empty").snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.p99());
+        assertEquals(0, snapshot.max());
+    }
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram("query");
+
+        // 1..1000 Mikrosekunden
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count());
+        assertEquals(1_000_000, snapshot.max());
+        assertWithin(500_000, snapshot.p50(), 0.125);
+        assertWithin(990_000, snapshot.p99(), 0.125);
+    }
+
+    @Test
+    void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram("single");
+        histogram.record(1_234_567);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1_234_567, snapshot.p50());
+        assertEquals(1_234_567, snapshot.p99());
+    }
+
+    @Test
+    void handlesExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram("extreme");
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.count());
+        assertEquals(Long.MAX_VALUE, snapshot.max());
+    }
+
+    @Test
+    void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram("reset");
+        histogram.record(42);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().max());
+    }
+
+    @Test
+    void countsConcurrentRecordsExactly() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram("concurrent");
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, histogram.snapshot().count());
+        assertEquals(9_999, histogram.snapshot().max());
+    }
+
+    private static void assertWithin(long expected, long actual, double tolerance) {
+        assertTrue(Math.abs(actual - expected) <= expected * tolerance,
+                "expected ~" + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,71 @@
+package at.lukas;
+
+import at.lukas.manager.MembershipLoader;
+import at.lukas.manager.MembershipTable;
+import at.lukas.migration.MigrationRunner;
+import at.lukas.misc.UuidCodec;
+import at.lukas.storage.H2Storage;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MembershipLoaderTest {
+
+    private final H2Storage storage = new H2Storage();
+
+    @Test
+    void nullExpiryIsLoadedAsPermanent() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new MigrationRunner(dataSource, storage, Logger.getLogger("MembershipLoaderTest")).migrate();
+
+        UUID permanent = UUID.randomUUID();
+        UUID temporary = UUID.randomUUID();
+
+        try (Connection conn = dataSource.getConnection()) {
+            int vipId = groupId(conn, "vip");
+            assignPlayer(conn, permanent, vipId, null);
+            assignPlayer(conn, temporary, vipId, 1_900_000_000L);
+
+            MembershipTable table = new MembershipLoader(storage).load(conn);
+
+            assertEquals(2, table.size());
+            assertEquals(vipId, table.groupId(permanent));
+            assertEquals(MembershipTable.PERMANENT, table.expiry(permanent));
+            assertEquals(vipId, table.groupId(temporary));
+            assertEquals(1_900_000_000_000L, table.expiry(temporary));
+        }
+    }
+
+    private void assignPlayer(Connection conn, UUID uuid, int groupId, Long expirySeconds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(storage.upsertPlayerGroupQuery())) {
+            stmt.setBytes(1, UuidCodec.toBytes(uuid));
+            stmt.setInt(2, groupId);
+            if (expirySeconds != null) {
+                stmt.setLong(3, expirySeconds);
+            } else {
+                stmt.setNull(3, Types.BIGINT);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private static int groupId(Connection conn, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM group_data WHERE name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package at.lukas;
+
+import at.lukas.manager.MembershipTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MembershipTableTest {
+
+    @Test
+    void putOverwritesAndMissingPlayersAreAbsent() {
+        MembershipTable table = new MembershipTable();
+        UUID uuid = UUID.randomUUID();
+
+        assertEquals(MembershipTable.ABSENT, table.groupId(uuid));
+
+        table.put(uuid, 2, MembershipTable.PERMANENT);
+        table.put(uuid, 3, 1_900_000_000_000L);
+
+        assertEquals(1, table.size());
+        assertEquals(3, table.groupId(uuid));
+        assertEquals(1_900_000_000_000L, table.expiry(uuid));
+        assertThrows(IllegalArgumentException.class, () -> table.put(uuid, MembershipTable.ABSENT, 0));
+    }
+
+    @Test
+    void matchesAHashMapAcrossGrowthAndRemovals() {
+        MembershipTable table = new MembershipTable();
+        Map<UUID, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            // Wenige verschiedene UUIDs, damit put, Überschreiben und remove sich oft treffen
+            UUID uuid = new UUID(random.nextInt(5_000), random.nextInt(4));
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(uuid) != null, table.remove(uuid));
+            } else {
+                int groupId = 1 + random.nextInt(10);
+                table.put(uuid, groupId, MembershipTable.PERMANENT);
+                expected.put(uuid, groupId);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (int most = 0; most < 5_000; most++) {
+            for (int least = 0; least < 4; least++) {
+                UUID uuid = new UUID(most, least);
+                assertEquals(expected.getOrDefault(uuid, MembershipTable.ABSENT), table.groupId(uuid));
+            }
+        }
+    }
+
+    @Test
+    void replaceGroupMovesAllMembersPermanently() {
+        MembershipTable table = new MembershipTable(3);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+
+        table.put(first, 5, 1_900_000_000_000L);
+        table.put(second, 5, MembershipTable.PERMANENT);
+        table.put(other, 2, MembershipTable.PERMANENT);
+
+        assertEquals(2, table.replaceGroup(5, 1));
+
+        assertEquals(1, table.groupId(first));
+        assertEquals(MembershipTable.PERMANENT, table.expiry(first));
+        assertEquals(1, table.groupId(second));
+        assertEquals(2, table.groupId(other));
+    }
+}
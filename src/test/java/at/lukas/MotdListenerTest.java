@@ -11,7 +11,10 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,6 +47,41 @@ class MotdListenerTest {
         assertEquals(expected, captor.getValue());
     }
 
+    @Test
+    void reusesRenderedMotdForEveryPing() {
+        // Arrange
+        when(config.getString("motd")).thenReturn("&aHello &bWorld");
+
+        MotdListener listener = new MotdListener(config);
+
+        // Act
+        listener.onPing(event);
+        listener.onPing(event);
+
+        // Assert
+        ArgumentCaptor<Component> captor = ArgumentCaptor.forClass(Component.class);
+        verify(event, times(2)).motd(captor.capture());
+
+        assertSame(captor.getAllValues().get(0), captor.getAllValues().get(1));
+    }
+
+    @Test
+    void motdLinesTakePrecedence() {
+        // Arrange
+        when(config.getStringList("motd-lines")).thenReturn(List.of("&eFirst", "&eSecond"));
+
+        MotdListener listener = new MotdListener(config);
+
+        // Act
+        listener.onPing(event);
+
+        // Assert
+        ArgumentCaptor<Component> captor = ArgumentCaptor.forClass(Component.class);
+        verify(event).motd(captor.capture());
+
+        assertEquals(LegacyComponentSerializer.legacyAmpersand().deserialize("&eFirst"), captor.getValue());
+    }
+
     @Test
     void doesNothingWhenMotdIsNull() {
         // Arrange
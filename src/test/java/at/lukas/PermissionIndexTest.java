@@ -0,0 +1,82 @@
+package at.lukas;
+
+import at.lukas.manager.PermissionIndex;
+import org.bukkit.permissions.Permission;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionIndexTest {
+
+    @Test
+    void expandsOnlyMatchingPrefix() {
+        PermissionIndex index = new PermissionIndex();
+        index.addAll(List.of(
+                new Permission("essentials.fly"),
+                new Permission("essentials.heal"),
+                new Permission("essentialsx.other"),
+                new Permission("worldedit.wand")
+        ));
+
+        assertEquals(Set.of("essentials.fly", "essentials.heal"), index.expand("essentials."));
+        assertTrue(index.expand("minecraft.").isEmpty());
+    }
+
+    @Test
+    void includesChildPermissions() {
+        PermissionIndex index = new PermissionIndex();
+        index.add(new Permission("kits.all", Map.of("kits.starter", true)));
+
+        assertEquals(Set.of("kits.all", "kits.starter"), index.expand("kits."));
+    }
+
+    @Test
+    void lateRegisteredPermissionsAreFound() {
+        PermissionIndex index = new PermissionIndex();
+        index.add(new Permission("shop.buy"));
+
+        assertEquals(1, index.expand("shop.").size());
+
+        index.addAll(List.of(new Permission("shop.sell")));
+
+        assertEquals(Set.of("shop.buy", "shop.sell"), index.expand("shop."));
+    }
+
+    @Test
+    void removedPermissionsDisappear() {
+        PermissionIndex index = new PermissionIndex();
+        Permission sell = new Permission("shop.sell");
+        index.addAll(List.of(new Permission("shop.buy"), sell));
+
+        index.removeAll(List.of(sell));
+
+        assertEquals(Set.of("shop.buy"), index.expand("shop."));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removedPermissionTakesItsChildrenWithIt() {
+        PermissionIndex index = new PermissionIndex();
+        Permission kits = new Permission("kits.all", Map.of("kits.starter", true, "kits.pvp", true));
+        index.addAll(List.of(kits, new Permission("kits.vip", Map.of("kits.pvp", true))));
+
+        index.removeAll(List.of(kits));
+
+        // kits.pvp wird von kits.vip weiterhin deklariert
+        assertEquals(Set.of("kits.vip", "kits.pvp"), index.expand("kits."));
+    }
+
+    @Test
+    void rebuildReplacesContent() {
+        PermissionIndex index = new PermissionIndex();
+        index.add(new Permission("old.node"));
+
+        index.rebuild(List.of(new Permission("new.node")));
+
+        assertEquals(Set.of("new.node"), index.all());
+    }
+}
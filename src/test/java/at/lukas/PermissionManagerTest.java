@@ -0,0 +1,124 @@
+package at.lukas;
+
+import at.lukas.manager.DatabaseManager;
+import at.lukas.manager.PermissionDictionary;
+import at.lukas.manager.PermissionManager;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PermissionManagerTest {
+
+    @Mock
+    Plugin plugin;
+
+    @Mock
+    Server server;
+
+    @Mock
+    PluginManager pluginManager;
+
+    @Mock
+    DatabaseManager dbManager;
+
+    @Mock
+    Player player;
+
+    private PermissionManager permissionManager;
+    private final AtomicReference<PermissionAttachment> attachment = new AtomicReference<>();
+    private final AtomicReference<Permission> playerPermission = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        when(plugin.getServer()).thenReturn(server);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("PermissionManagerTest"));
+        when(server.getPluginManager()).thenReturn(pluginManager);
+        when(dbManager.getPermissionDictionary()).thenReturn(new PermissionDictionary());
+        when(pluginManager.getPermissions()).thenReturn(Set.of(
+                new Permission("essentials.home"),
+                new Permission("essentials.fly"),
+                new Permission("worldedit.wand")
+        ));
+
+        lenient().when(plugin.isEnabled()).thenReturn(true);
+        lenient().when(player.isOnline()).thenReturn(true);
+        lenient().when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        lenient().when(player.getName()).thenReturn("Steve");
+        lenient().when(player.addAttachment(plugin)).thenAnswer(invocation -> {
+            attachment.set(new PermissionAttachment(plugin, player));
+            return attachment.get();
+        });
+        lenient().doAnswer(invocation -> {
+            playerPermission.set(invocation.getArgument(0));
+            return null;
+        }).when(pluginManager).addPermission(any(Permission.class));
+
+        permissionManager = new PermissionManager(plugin, dbManager);
+    }
+
+    @Test
+    void appliesOnlyTheDifferenceWithOneRecalculation() {
+        permissionManager.applyPermissions(player, List.of("a.b", "c.d"));
+
+        assertEquals(Map.of(playerPermission.get().getName(), true), attachment.get().getPermissions());
+        assertEquals(Map.of("a.b", true, "c.d", true), playerPermission.get().getChildren());
+
+        permissionManager.applyPermissions(player, List.of("a.b", "e.f"));
+
+        assertEquals(Map.of("a.b", true, "e.f", true), playerPermission.get().getChildren());
+        verify(player, times(1)).addAttachment(plugin);
+        verify(pluginManager, times(1)).addPermission(any(Permission.class));
+        verify(player, never()).removeAttachment(any());
+        // Eine Neuberechnung pro Änderung, nicht pro Knoten
+        verify(player, times(2)).recalculatePermissions();
+    }
+
+    @Test
+    void quitUnregistersThePlayerPermission() {
+        permissionManager.applyPermissions(player, List.of("a.b"));
+
+        permissionManager.removePermissions(player);
+
+        verify(pluginManager).removePermission(playerPermission.get());
+    }
+
+    @Test
+    void unchangedPermissionsDoNotRecalculate() {
+        permissionManager.applyPermissions(player, List.of("a.b"));
+        clearInvocations(player);
+
+        permissionManager.applyPermissions(player, List.of("A.B"));
+
+        verify(player, never()).recalculatePermissions();
+    }
+
+    @Test
+    void expandsWildcardsAgainstRegisteredPermissions() {
+        permissionManager.applyPermissions(player, List.of("essentials.*"));
+
+        Map<String, Boolean> permissions = playerPermission.get().getChildren();
+        assertTrue(permissions.containsKey("essentials.*"));
+        assertTrue(permissions.containsKey("essentials.home"));
+        assertTrue(permissions.containsKey("essentials.fly"));
+        assertFalse(permissions.containsKey("worldedit.wand"));
+    }
+}
@@ -0,0 +1,61 @@
+package at.lukas;
+
+import at.lukas.manager.PermissionDictionary;
+import at.lukas.manager.PermissionSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionSetTest {
+
+    private final PermissionDictionary dictionary = new PermissionDictionary();
+
+    @Test
+    void sameNodeGetsTheSameId() {
+        int id = dictionary.intern("essentials.fly");
+
+        assertEquals(id, dictionary.intern(new String("essentials.fly")));
+        assertEquals("essentials.fly", dictionary.node(id));
+        assertEquals(-1, dictionary.lookup("essentials.heal"));
+    }
+
+    @Test
+    void behavesLikeAnImmutableSetOfStrings() {
+        PermissionSet set = PermissionSet.of(dictionary, List.of("essentials.fly", "essentials.home", "essentials.fly"));
+
+        assertEquals(2, set.size());
+        assertTrue(set.contains("essentials.home"));
+        assertFalse(set.contains("essentials.heal"));
+        assertEquals(Set.of("essentials.fly", "essentials.home"), set);
+        assertEquals(set, Set.of("essentials.home", "essentials.fly"));
+        assertEquals(Set.of("essentials.fly", "essentials.home").hashCode(), set.hashCode());
+        assertEquals(List.of("essentials.fly", "essentials.home"), new ArrayList<>(set));
+        assertThrows(UnsupportedOperationException.class, () -> set.add("essentials.heal"));
+    }
+
+    @Test
+    void unionAndDifference() {
+        PermissionSet current = PermissionSet.of(dictionary, List.of("a", "b", "c"));
+        PermissionSet target = PermissionSet.of(dictionary, List.of("b", "c", "d"));
+
+        assertEquals(Set.of("a", "b", "c", "d"), current.union(target));
+        assertEquals(Set.of("a"), current.difference(target));
+        assertEquals(Set.of("d"), target.difference(current));
+        assertSame(current, current.union(PermissionSet.of(dictionary, List.of("a"))));
+        assertTrue(current.difference(current).isEmpty());
+    }
+
+    @Test
+    void withAndWithoutReturnTheSameSetWhenNothingChanges() {
+        PermissionSet set = PermissionSet.of(dictionary, List.of("a"));
+
+        assertSame(set, set.with("a"));
+        assertSame(set, set.without("b"));
+        assertEquals(Set.of("a", "b"), set.with("b"));
+        assertTrue(set.without("a").isEmpty());
+    }
+}
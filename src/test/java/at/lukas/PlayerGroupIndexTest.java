@@ -0,0 +1,83 @@
+package at.lukas;
+
+import at.lukas.manager.PlayerGroupIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerGroupIndexTest {
+
+    @Test
+    void tracksMembersPerGroup() {
+        PlayerGroupIndex index = new PlayerGroupIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        index.put(first, "VIP");
+        index.put(second, "vip");
+
+        assertEquals("vip", index.get(first));
+        assertEquals(Set.of(first, second), index.members("Vip"));
+        assertEquals(2, index.count("vip"));
+    }
+
+    @Test
+    void changingGroupMovesMember() {
+        PlayerGroupIndex index = new PlayerGroupIndex();
+        UUID uuid = UUID.randomUUID();
+
+        index.put(uuid, "vip");
+        index.put(uuid, "admin");
+
+        assertEquals(0, index.count("vip"));
+        assertEquals(Set.of(uuid), index.members("admin"));
+    }
+
+    @Test
+    void putIfAbsentKeepsALoadedGroup() {
+        PlayerGroupIndex index = new PlayerGroupIndex();
+        UUID loaded = UUID.randomUUID();
+        UUID fallback = UUID.randomUUID();
+        index.put(loaded, "vip");
+
+        index.putIfAbsent(loaded, "default");
+        index.putIfAbsent(fallback, "default");
+
+        assertEquals("vip", index.get(loaded));
+        assertEquals(Set.of(fallback), index.members("default"));
+    }
+
+    @Test
+    void replaceIgnoresUnloadedPlayers() {
+        PlayerGroupIndex index = new PlayerGroupIndex();
+        UUID loaded = UUID.randomUUID();
+        UUID unloaded = UUID.randomUUID();
+        index.put(loaded, "vip");
+
+        index.replace(loaded, "default");
+        index.replace(unloaded, "default");
+
+        assertEquals(Set.of(loaded), index.members("default"));
+        assertFalse(index.contains(unloaded));
+    }
+
+    @Test
+    void removeAndClearDropMembership() {
+        PlayerGroupIndex index = new PlayerGroupIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        index.put(first, "vip");
+        index.put(second, "admin");
+
+        index.remove(first);
+        assertEquals(0, index.count("vip"));
+        assertNull(index.get(first));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.members("admin").isEmpty());
+    }
+}
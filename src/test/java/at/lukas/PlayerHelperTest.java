@@ -2,16 +2,20 @@ package at.lukas;
 
 import at.lukas.manager.DatabaseManager;
 import at.lukas.misc.PlayerHelper;
+import at.lukas.model.RenderedPrefix;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.bukkit.entity.Player;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,15 +37,16 @@ class PlayerHelperTest {
 
         when(player.getUniqueId()).thenReturn(uuid);
         when(player.getName()).thenReturn("Lukas");
-        when(dbManager.getPlayerPrefix(uuid)).thenReturn("&a[Admin]");
+        when(dbManager.getPlayerRenderedPrefix(uuid)).thenReturn(RenderedPrefix.of("&a[Admin]"));
 
         PlayerHelper.applyPrefix(player, dbManager);
 
-        Component expected =
-                serializer.deserialize("&a[Admin] Lukas");
+        ArgumentCaptor<Component> displayName = ArgumentCaptor.forClass(Component.class);
+        verify(player).displayName(displayName.capture());
+        verify(player).playerListName(displayName.getValue());
 
-        verify(player).displayName(expected);
-        verify(player).playerListName(expected);
+        // Gleiche Darstellung wie früher beim Parsen von "prefix name"
+        assertEquals("&a[Admin] Lukas", serializer.serialize(displayName.getValue()));
     }
 
     @Test
@@ -50,15 +55,23 @@ class PlayerHelperTest {
 
         when(player.getUniqueId()).thenReturn(uuid);
         when(player.getName()).thenReturn("Steve");
-        when(dbManager.getPlayerPrefix(uuid)).thenReturn(null);
+        when(dbManager.getPlayerRenderedPrefix(uuid)).thenReturn(RenderedPrefix.of(null));
 
         PlayerHelper.applyPrefix(player, dbManager);
 
-        Component expected =
-                serializer.deserialize("&7 Steve");
+        ArgumentCaptor<Component> displayName = ArgumentCaptor.forClass(Component.class);
+        verify(player).displayName(displayName.capture());
+        verify(player).playerListName(displayName.getValue());
 
-        verify(player).displayName(expected);
-        verify(player).playerListName(expected);
+        // Gleiche Darstellung wie früher beim Parsen von "prefix name"
+        assertEquals("&7 Steve", serializer.serialize(displayName.getValue()));
+    }
+
+    @Test
+    void reusesRenderedPrefixOfGroup() {
+        RenderedPrefix prefix = RenderedPrefix.of("&c[Mod]");
+
+        assertSame(prefix.prefix(), prefix.withName("Lukas").children().get(0));
     }
 
     @Test
@@ -67,14 +80,15 @@ class PlayerHelperTest {
 
         when(player.getUniqueId()).thenReturn(uuid);
         when(player.getName()).thenReturn("Alex");
-        when(dbManager.getPlayerPrefix(uuid)).thenReturn("");
+        when(dbManager.getPlayerRenderedPrefix(uuid)).thenReturn(RenderedPrefix.of(""));
 
         PlayerHelper.applyPrefix(player, dbManager);
 
-        Component expected =
-                serializer.deserialize("&7 Alex");
+        ArgumentCaptor<Component> displayName = ArgumentCaptor.forClass(Component.class);
+        verify(player).displayName(displayName.capture());
+        verify(player).playerListName(displayName.getValue());
 
-        verify(player).displayName(expected);
-        verify(player).playerListName(expected);
+        // Gleiche Darstellung wie früher beim Parsen von "prefix name"
+        assertEquals("&7 Alex", serializer.serialize(displayName.getValue()));
     }
 }
@@ -0,0 +1,75 @@
+package at.lukas;
+
+import at.lukas.misc.PlayerNameResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerNameResolverTest {
+
+    @Test
+    void onlinePlayersAreFoundCaseInsensitive() {
+        PlayerNameResolver resolver = new PlayerNameResolver(null, 10);
+        UUID uuid = UUID.randomUUID();
+
+        resolver.playerJoined(uuid, "Steve");
+
+        assertEquals(uuid, resolver.getCached("steve"));
+        assertEquals(uuid, resolver.resolve("STEVE").join());
+        assertNull(resolver.getCached("Alex"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOfflineName() {
+        PlayerNameResolver resolver = new PlayerNameResolver(null, 2);
+        UUID alex = UUID.randomUUID();
+        UUID steve = UUID.randomUUID();
+        UUID notch = UUID.randomUUID();
+
+        resolver.playerJoined(alex, "Alex");
+        resolver.playerQuit(alex, "Alex");
+        resolver.playerJoined(steve, "Steve");
+        resolver.playerQuit(steve, "Steve");
+
+        // Alex wurde zuletzt benutzt, also fliegt Steve raus
+        assertEquals(alex, resolver.getCached("alex"));
+        resolver.playerJoined(notch, "Notch");
+        resolver.playerQuit(notch, "Notch");
+
+        assertEquals(alex, resolver.getCached("Alex"));
+        assertNull(resolver.getCached("Steve"));
+        assertEquals(notch, resolver.getCached("Notch"));
+    }
+
+    @Test
+    void onlinePlayersAreNeverEvicted() {
+        PlayerNameResolver resolver = new PlayerNameResolver(null, 1);
+        UUID online = UUID.randomUUID();
+
+        resolver.playerJoined(online, "Steve");
+        for (int i = 0; i < 5; i++) {
+            UUID other = UUID.randomUUID();
+            resolver.playerJoined(other, "Player" + i);
+            resolver.playerQuit(other, "Player" + i);
+        }
+
+        assertEquals(online, resolver.getCached("Steve"));
+        assertNotNull(resolver.getCached("Player4"));
+        assertNull(resolver.getCached("Player3"));
+    }
+
+    @Test
+    void joinListenersReceiveTheJoinedName() {
+        PlayerNameResolver resolver = new PlayerNameResolver(null, 10);
+        List<String> joined = new ArrayList<>();
+        resolver.addJoinListener(joined::add);
+
+        resolver.playerJoined(UUID.randomUUID(), "Steve");
+
+        assertEquals(List.of("Steve"), joined);
+    }
+}
@@ -2,20 +2,22 @@ package at.lukas;
 
 import at.lukas.listener.SignListener;
 import at.lukas.manager.DatabaseManager;
+import at.lukas.manager.SignManager;
+import at.lukas.misc.PlayerNameResolver;
+import at.lukas.misc.SignRenderer;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
-import org.bukkit.entity.Player;
 import org.bukkit.event.block.SignChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,136 +27,169 @@ class SignListenerTest {
     DatabaseManager dbManager;
 
     @Mock
-    Player placer;
-
-    @Mock
-    Player onlinePlayer;
-
-    @Mock
-    OfflinePlayer offlinePlayer;
+    SignManager signManager;
 
     @Mock
     SignChangeEvent event;
 
+    private PlayerNameResolver nameResolver;
+
     private final LegacyComponentSerializer section =
             LegacyComponentSerializer.legacySection();
 
     private final LegacyComponentSerializer amp =
             LegacyComponentSerializer.legacyAmpersand();
 
+    @BeforeEach
+    void setUp() {
+        nameResolver = new PlayerNameResolver(dbManager, 100);
+    }
+
     @Test
     void replacesPlayerNameWithPrefix() {
         UUID uuid = UUID.randomUUID();
 
-        when(event.getPlayer()).thenReturn(placer);
         when(event.line(0)).thenReturn(section.deserialize("%Steve%"));
         when(dbManager.getPlayerPrefix(uuid)).thenReturn("&a[Admin] ");
 
-        when(onlinePlayer.getUniqueId()).thenReturn(uuid);
-
-        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
-            bukkit.when(() -> Bukkit.getPlayer("Steve")).thenReturn(onlinePlayer);
+        nameResolver.playerJoined(uuid, "Steve");
 
-            SignListener listener = new SignListener(dbManager);
-            listener.onSignChange(event);
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
+        listener.onSignChange(event);
 
-            verify(event).line(
-                    eq(0),
-                    eq(amp.deserialize("&a[Admin] Steve"))
-            );
-        }
+        verify(event).line(
+                eq(0),
+                eq(amp.deserialize("&a[Admin] Steve"))
+        );
     }
 
     @Test
     void replacesGroupPlaceholderOnly() {
         UUID uuid = UUID.randomUUID();
 
-        when(event.getPlayer()).thenReturn(placer);
         when(event.line(0)).thenReturn(section.deserialize("%Steve%group%"));
         when(dbManager.getPlayerPrefix(uuid)).thenReturn("&b[VIP]");
 
-        when(onlinePlayer.getUniqueId()).thenReturn(uuid);
+        nameResolver.playerJoined(uuid, "Steve");
 
-        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
-            bukkit.when(() -> Bukkit.getPlayer("Steve")).thenReturn(onlinePlayer);
-
-            SignListener listener = new SignListener(dbManager);
-            listener.onSignChange(event);
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
+        listener.onSignChange(event);
 
-            verify(event).line(
-                    eq(0),
-                    eq(amp.deserialize("&b[VIP]"))
-            );
-        }
+        verify(event).line(
+                eq(0),
+                eq(amp.deserialize("&b[VIP]"))
+        );
     }
 
     @Test
     void unknownPlayerReplacedWithUnknown() {
-        when(event.getPlayer()).thenReturn(placer);
         when(event.line(0)).thenReturn(section.deserialize("%Ghost%"));
+        when(dbManager.findPlayerUuid("Ghost")).thenReturn(CompletableFuture.completedFuture(null));
 
-        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
-            bukkit.when(() -> Bukkit.getPlayer("Ghost")).thenReturn(null);
-            bukkit.when(() -> Bukkit.getOfflinePlayer("Ghost"))
-                    .thenReturn(offlinePlayer);
-
-            when(offlinePlayer.hasPlayedBefore()).thenReturn(false);
+        nameResolver.resolve("Ghost").join();
 
-            SignListener listener = new SignListener(dbManager);
-            listener.onSignChange(event);
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
+        listener.onSignChange(event);
 
-            verify(event).line(
-                    eq(0),
-                    eq(amp.deserialize("&c[Unknown]"))
-            );
-        }
+        verify(event).line(
+                eq(0),
+                eq(amp.deserialize("&c[Unknown]"))
+        );
     }
 
     @Test
     void offlinePlayerWithHistoryIsResolved() {
         UUID uuid = UUID.randomUUID();
 
-        when(event.getPlayer()).thenReturn(placer);
         when(event.line(0)).thenReturn(section.deserialize("%Alex%"));
+        when(dbManager.getPlayerPrefix(uuid)).thenReturn("&6[Legend] ");
+
+        // Nach dem Quit bleibt der Name im LRU-Cache
+        nameResolver.playerJoined(uuid, "Alex");
+        nameResolver.playerQuit(uuid, "Alex");
 
-        when(offlinePlayer.hasPlayedBefore()).thenReturn(true);
-        when(offlinePlayer.getUniqueId()).thenReturn(uuid);
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
+        listener.onSignChange(event);
+
+        verify(event).line(
+                eq(0),
+                eq(amp.deserialize("&6[Legend] Alex"))
+        );
+        verify(dbManager, never()).findPlayerUuid(any());
+    }
+
+    @Test
+    void uncachedNameIsShownGreyAndResolvedInBackground() {
+        UUID uuid = UUID.randomUUID();
+
+        when(event.line(0)).thenReturn(section.deserialize("%Alex%"));
+        when(dbManager.findPlayerUuid("Alex")).thenReturn(CompletableFuture.completedFuture(uuid));
         when(dbManager.getPlayerPrefix(uuid)).thenReturn("&6[Legend] ");
 
-        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
-            bukkit.when(() -> Bukkit.getPlayer("Alex")).thenReturn(null);
-            bukkit.when(() -> Bukkit.getOfflinePlayer("Alex"))
-                    .thenReturn(offlinePlayer);
+        SignRenderer renderer = new SignRenderer(dbManager, nameResolver);
+        SignListener listener = new SignListener(renderer, signManager);
+        listener.onSignChange(event);
 
-            SignListener listener = new SignListener(dbManager);
-            listener.onSignChange(event);
+        // Das Event selbst wartet nicht auf die Datenbank
+        verify(event).line(eq(0), eq(amp.deserialize("&7Alex")));
 
-            verify(event).line(
-                    eq(0),
-                    eq(amp.deserialize("&6[Legend] Alex"))
-            );
-        }
+        // Nach dem Auflösen liefert das nächste Rendern den Prefix
+        assertEquals(amp.deserialize("&6[Legend] Alex"), renderer.render(new String[]{"%Alex%"}).lines()[0]);
     }
 
     @Test
     void lineWithoutPlaceholderIsIgnored() {
         Component original = section.deserialize("Hello World");
 
-        when(event.getPlayer()).thenReturn(placer);
         when(event.line(0)).thenReturn(original);
 
-        SignListener listener = new SignListener(dbManager);
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
+        listener.onSignChange(event);
+
+        verify(event, never()).line(eq(0), any());
+        verify(signManager, never()).track(any(), any(), any());
+        // Falls das Schild vorher Platzhalter hatte, gilt ab jetzt der neue Text
+        verify(signManager).untrackSide(any(), any());
+    }
+
+    @Test
+    void placeholderSignIsTrackedWithRawLines() {
+        UUID uuid = UUID.randomUUID();
+
+        when(event.line(0)).thenReturn(section.deserialize("Shop by"));
+        when(event.line(1)).thenReturn(section.deserialize("%Steve%"));
+        when(dbManager.getPlayerPrefix(uuid)).thenReturn("&a[Admin] ");
+
+        nameResolver.playerJoined(uuid, "Steve");
+
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
         listener.onSignChange(event);
 
         verify(event, never()).line(eq(0), any());
+        verify(signManager).track(any(), any(), eq(new String[]{"Shop by", "%Steve%", "", ""}));
+    }
+
+    @Test
+    void colorCodesAreStoredWithAmpersand() {
+        UUID uuid = UUID.randomUUID();
+
+        when(event.line(0)).thenReturn(section.deserialize("§aShop"));
+        when(event.line(1)).thenReturn(section.deserialize("%Steve%"));
+        when(dbManager.getPlayerPrefix(uuid)).thenReturn("&a[Admin] ");
+
+        nameResolver.playerJoined(uuid, "Steve");
+
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
+        listener.onSignChange(event);
+
+        verify(signManager).track(any(), any(), eq(new String[]{"&aShop", "%Steve%", "", ""}));
     }
 
     @Test
     void nullLineIsIgnored() {
-        when(event.getPlayer()).thenReturn(placer);
         when(event.line(0)).thenReturn(null);
 
-        SignListener listener = new SignListener(dbManager);
+        SignListener listener = new SignListener(new SignRenderer(dbManager, nameResolver), signManager);
         listener.onSignChange(event);
 
         verify(event, never()).line(eq(0), any());
@@ -0,0 +1,49 @@
+package at.lukas;
+
+import at.lukas.misc.SignTemplate;
+import at.lukas.misc.SignTemplate.Literal;
+import at.lukas.misc.SignTemplate.PlayerRef;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignTemplateTest {
+
+    @Test
+    void compilesNameAndGroupPlaceholders() {
+        SignTemplate template = SignTemplate.compile(new String[]{"Shop by %Steve%", "%Alex%group% Rank"});
+
+        assertArrayEquals(new SignTemplate.Part[]{new Literal("Shop by "), new PlayerRef("Steve", false)}, template.line(0));
+        assertArrayEquals(new SignTemplate.Part[]{new PlayerRef("Alex", true), new Literal(" Rank")}, template.line(1));
+        assertEquals(Set.of("Steve", "Alex"), template.playerNames());
+    }
+
+    @Test
+    void linesWithoutPlaceholderAreNull() {
+        SignTemplate template = SignTemplate.compile(new String[]{"plain", "100%", "", "50% off %"});
+
+        assertNull(template.line(0));
+        assertNull(template.line(1));
+        assertNull(template.line(2));
+        assertNull(template.line(3));
+        assertFalse(template.hasPlaceholders());
+    }
+
+    @Test
+    void strayPercentSignsStayLiteral() {
+        SignTemplate template = SignTemplate.compile(new String[]{"10% %Steve% 5%"});
+
+        assertArrayEquals(new SignTemplate.Part[]{
+                new Literal("10% "), new PlayerRef("Steve", false), new Literal(" 5%")
+        }, template.line(0));
+    }
+
+    @Test
+    void adjacentPlaceholders() {
+        SignTemplate template = SignTemplate.compile(new String[]{"%A%%B%group%"});
+
+        assertArrayEquals(new SignTemplate.Part[]{new PlayerRef("A", false), new PlayerRef("B", true)}, template.line(0));
+    }
+}
@@ -0,0 +1,78 @@
+package at.lukas;
+
+import at.lukas.misc.UserImportReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserImportReaderTest {
+
+    private static final UUID FIRST = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final UUID SECOND = UUID.fromString("853c80ef-3c37-49fd-aa49-938b674adae6");
+
+    @Test
+    void readsCsvWithHeaderAndOptionalDuration() throws IOException {
+        UserImportReader reader = reader(UserImportReader.Format.CSV, """
+                uuid,group,duration
+                %s,VIP,30d
+
+                # Kommentar
+                %s,admin
+                """.formatted(FIRST, SECOND));
+
+        UserImportReader.Row first = reader.next();
+        assertEquals(FIRST, first.uuid());
+        assertEquals("vip", first.group());
+        assertEquals(30L * 24 * 60 * 60 * 1000, first.durationMillis());
+
+        UserImportReader.Row second = reader.next();
+        assertEquals(SECOND, second.uuid());
+        assertNull(second.durationMillis());
+        assertEquals(5, second.line());
+
+        assertNull(reader.next());
+    }
+
+    @Test
+    void invalidRowIsReportedWithLineAndReadingContinues() throws IOException {
+        UserImportReader reader = reader(UserImportReader.Format.CSV, """
+                not-a-uuid,vip
+                %s,vip,permanent
+                """.formatted(FIRST));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, reader::next);
+        assertTrue(error.getMessage().startsWith("Line 1:"));
+
+        assertEquals(FIRST, reader.next().uuid());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void readsNdjson() throws IOException {
+        UserImportReader reader = reader(UserImportReader.Format.NDJSON, """
+                {"uuid": "%s", "group": "vip", "duration": "1h"}
+                {"uuid": "%s", "group": "admin"}
+                """.formatted(FIRST, SECOND));
+
+        assertEquals(60L * 60 * 1000, reader.next().durationMillis());
+        assertNull(reader.next().durationMillis());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void formatFollowsFileExtension() {
+        assertEquals(UserImportReader.Format.CSV, UserImportReader.Format.of(Path.of("ranks.CSV")));
+        assertEquals(UserImportReader.Format.NDJSON, UserImportReader.Format.of(Path.of("ranks.jsonl")));
+        assertThrows(IllegalArgumentException.class, () -> UserImportReader.Format.of(Path.of("ranks.txt")));
+    }
+
+    private static UserImportReader reader(UserImportReader.Format format, String content) {
+        return new UserImportReader(new BufferedReader(new StringReader(content)), format);
+    }
+}
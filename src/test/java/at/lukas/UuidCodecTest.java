@@ -0,0 +1,40 @@
+package at.lukas;
+
+import at.lukas.misc.UuidCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidCodecTest {
+
+    @Test
+    void roundTripsUuid() {
+        UUID uuid = UUID.randomUUID();
+
+        assertEquals(uuid, UuidCodec.fromBytes(UuidCodec.toBytes(uuid)));
+    }
+
+    @Test
+    void usesBigEndianLayoutLikeMysqlUnhex() {
+        UUID uuid = UUID.fromString("00112233-4455-6677-8899-aabbccddeeff");
+
+        byte[] bytes = UuidCodec.toBytes(uuid);
+
+        assertEquals(16, bytes.length);
+        assertEquals((byte) 0x00, bytes[0]);
+        assertEquals((byte) 0x11, bytes[1]);
+        assertEquals((byte) 0xff, bytes[15]);
+    }
+
+    @Test
+    void nullStaysNull() {
+        assertNull(UuidCodec.fromBytes(null));
+    }
+
+    @Test
+    void rejectsWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> UuidCodec.fromBytes(new byte[8]));
+    }
+}